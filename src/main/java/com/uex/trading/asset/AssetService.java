@@ -1,12 +1,20 @@
 package com.uex.trading.asset;
 
-import com.uex.trading.common.FlowType;
+import com.uex.trading.common.CursorPage;
+import com.uex.trading.common.CursorPager;
+import com.uex.trading.common.FixedPoint;
 import com.uex.trading.common.OrderSide;
 import com.uex.trading.order.Order;
 import com.uex.trading.order.Trade;
+import com.uex.trading.symbol.SymbolRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
 import org.redisson.api.RList;
 import org.redisson.api.RMap;
+import org.redisson.api.RScoredSortedSet;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,227 +22,282 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
 public class AssetService {
 
+    private static final int LEGACY_FLOW_CHUNK = 1000;
+
     @Autowired
     private RedissonClient redissonClient;
 
-    @Value("${redis.keys.balance-prefix}")
-    private String balancePrefix;
+    @Autowired
+    private BalanceLedger balanceLedger;
+
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    @Autowired
+    private FlowJournal flowJournal;
 
     @Value("${redis.keys.flow-prefix}")
     private String flowPrefix;
 
+    /**
+     * 已检查过旧版流水list的用户，避免每次查询都访问Redis
+     */
+    private final Cache<String, Boolean> legacyFlowChecked = CacheBuilder.newBuilder()
+            .maximumSize(100_000)
+            .build();
+
     public Balance getBalance(String userId, String asset) {
-        String key = balancePrefix + userId + ":" + asset;
-        RMap<String, Object> balanceMap = redissonClient.getMap(key);
-
-        if (balanceMap.isEmpty()) {
-            Balance balance = new Balance();
-            balance.setUserId(userId);
-            balance.setAsset(asset);
-            balance.setAvailable(BigDecimal.ZERO);
-            balance.setFrozen(BigDecimal.ZERO);
-            balance.setUpdateTime(System.currentTimeMillis());
-            return balance;
+        int assetId = symbolRegistry.assetId(asset);
+        if (assetId < 0) {
+            return balanceLedger.peekBalance(userId, asset);
         }
+        return balanceLedger.getBalance(userId, assetId);
+    }
+
+    public List<Balance> getAllBalances(String userId) {
+        return balanceLedger.getAllBalances(userId);
+    }
 
-        Balance balance = new Balance();
-        balance.setUserId(userId);
-        balance.setAsset(asset);
-        balance.setAvailable(new BigDecimal(balanceMap.get("available").toString()));
-        balance.setFrozen(new BigDecimal(balanceMap.get("frozen").toString()));
-        balance.setUpdateTime(Long.parseLong(balanceMap.get("updateTime").toString()));
+    public void freezeAsset(String userId, Order order) {
+        int symbolId = symbolRegistry.requireSymbolId(order.getSymbol());
+        int asset = freezeAssetId(symbolId, order);
+        long amount = freezeAmount(symbolId, order);
 
-        return balance;
+        balanceLedger.freeze(userId, asset, amount);
+
+        log.info("Asset frozen: userId={}, asset={}, amount={}", userId, symbolRegistry.assetName(asset),
+                FixedPoint.toPlainString(amount, FixedPoint.SCALE));
     }
 
-    public List<Balance> getAllBalances(String userId) {
-        String pattern = balancePrefix + userId + ":*";
-        List<Balance> balances = new ArrayList<>();
-
-        for (String key : redissonClient.getKeys().getKeysByPattern(pattern)) {
-            String asset = key.substring(key.lastIndexOf(":") + 1);
-            Balance balance = getBalance(userId, asset);
-            if (balance.getTotal().compareTo(BigDecimal.ZERO) > 0) {
-                balances.add(balance);
+    /**
+     * 批量下单冻结：按顺序逐笔冻结，同一币种合并为一次账本更新
+     *
+     * @return 每笔订单的失败原因，冻结成功为null
+     */
+    public String[] freezeAssets(String userId, List<Order> orders) {
+        int[] assets = new int[orders.size()];
+        long[] amounts = new long[orders.size()];
+        String[] errors = new String[orders.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            try {
+                int symbolId = symbolRegistry.requireSymbolId(order.getSymbol());
+                amounts[i] = freezeAmount(symbolId, order);
+                if (amounts[i] <= 0) {
+                    throw new RuntimeException("Freeze amount must be positive: " + order.getOrderId());
+                }
+                assets[i] = freezeAssetId(symbolId, order);
+            } catch (RuntimeException e) {
+                assets[i] = -1;
+                errors[i] = e.getMessage();
+            }
+        }
+
+        boolean[] frozen = balanceLedger.freezeAll(userId, assets, amounts);
+        for (int i = 0; i < orders.size(); i++) {
+            if (!frozen[i] && errors[i] == null) {
+                errors[i] = "Insufficient balance: " + symbolRegistry.assetName(assets[i]);
             }
         }
 
-        return balances;
+        log.info("Assets frozen for batch: userId={}, orders={}", userId, orders.size());
+        return errors;
     }
 
-    public void freezeAsset(String userId, Order order) {
-        String asset;
-        BigDecimal amount;
+    /**
+     * 改单：按新旧价格/数量计算剩余部分的冻结金额，只冻结或解冻差额
+     */
+    public void amendFrozen(Order order, BigDecimal newPrice, BigDecimal newQuantity) {
+        int symbolId = symbolRegistry.requireSymbolId(order.getSymbol());
+        int asset = freezeAssetId(symbolId, order);
+        long before = remainingAmount(symbolId, order, order.getPrice(), order.getQuantity());
+        long after = remainingAmount(symbolId, order, newPrice, newQuantity);
+
+        if (after > before) {
+            balanceLedger.freeze(order.getUserId(), asset, after - before);
+        } else if (after < before) {
+            balanceLedger.unfreeze(order.getUserId(), asset, before - after);
+        }
+
+        log.info("Frozen amount amended: userId={}, orderId={}, asset={}, delta={}", order.getUserId(),
+                order.getOrderId(), symbolRegistry.assetName(asset),
+                FixedPoint.toPlainString(after - before, FixedPoint.SCALE));
+    }
+
+    /**
+     * 买单冻结计价货币，卖单冻结基础货币
+     */
+    private int freezeAssetId(int symbolId, Order order) {
+        return order.getSide() == OrderSide.BUY
+                ? symbolRegistry.quoteAsset(symbolId)
+                : symbolRegistry.baseAsset(symbolId);
+    }
+
+    private long freezeAmount(int symbolId, Order order) {
+        int priceScale = symbolRegistry.priceScale(symbolId);
+        int qtyScale = symbolRegistry.qtyScale(symbolId);
+        long quantity = FixedPoint.toLong(order.getQuantity(), qtyScale);
 
         if (order.getSide() == OrderSide.BUY) {
-            // 买单冻结计价货币
-            asset = order.getSymbol().replaceAll("^[A-Z]+", "");
-            if (order.getPrice() != null) {
-                amount = order.getPrice().multiply(order.getQuantity());
-            } else {
+            if (order.getPrice() == null) {
                 throw new RuntimeException("Market buy order not supported yet");
             }
-        } else {
-            // 卖单冻结基础货币
-            asset = order.getSymbol().replaceAll("[A-Z]+$", "");
-            amount = order.getQuantity();
-        }
-
-        Balance balance = getBalance(userId, asset);
-        if (balance.getAvailable().compareTo(amount) < 0) {
-            throw new RuntimeException("Insufficient balance: " + asset);
+            long price = FixedPoint.toLong(order.getPrice(), priceScale);
+            return FixedPoint.multiply(price, priceScale, quantity, qtyScale, FixedPoint.SCALE);
         }
+        return FixedPoint.rescale(quantity, qtyScale, FixedPoint.SCALE);
+    }
 
-        balance.setAvailable(balance.getAvailable().subtract(amount));
-        balance.setFrozen(balance.getFrozen().add(amount));
-        balance.setUpdateTime(System.currentTimeMillis());
-
-        saveBalance(balance);
+    /**
+     * 按给定的价格和数量计算订单未成交部分应冻结的金额
+     */
+    private long remainingAmount(int symbolId, Order order, BigDecimal price, BigDecimal quantity) {
+        int priceScale = symbolRegistry.priceScale(symbolId);
+        int qtyScale = symbolRegistry.qtyScale(symbolId);
+        long remainQty = FixedPoint.toLong(quantity, qtyScale) - FixedPoint.toLong(order.getFilledQty(), qtyScale);
 
-        log.info("Asset frozen: userId={}, asset={}, amount={}", userId, asset, amount);
+        if (order.getSide() == OrderSide.BUY) {
+            return FixedPoint.multiply(FixedPoint.toLong(price, priceScale), priceScale, remainQty, qtyScale,
+                    FixedPoint.SCALE);
+        }
+        return FixedPoint.rescale(remainQty, qtyScale, FixedPoint.SCALE);
     }
 
     public void unfreezeAsset(Order order) {
-        String asset;
-        BigDecimal amount;
+        int symbolId = symbolRegistry.requireSymbolId(order.getSymbol());
+        int priceScale = symbolRegistry.priceScale(symbolId);
+        int qtyScale = symbolRegistry.qtyScale(symbolId);
+        long remainQty = FixedPoint.toLong(order.getQuantity(), qtyScale)
+                - FixedPoint.toLong(order.getFilledQty(), qtyScale);
+
+        int asset;
+        long amount;
 
         if (order.getSide() == OrderSide.BUY) {
-            asset = order.getSymbol().replaceAll("^[A-Z]+", "");
-            BigDecimal remainQty = order.getQuantity().subtract(order.getFilledQty());
-            amount = order.getPrice().multiply(remainQty);
+            asset = symbolRegistry.quoteAsset(symbolId);
+            long price = FixedPoint.toLong(order.getPrice(), priceScale);
+            amount = FixedPoint.multiply(price, priceScale, remainQty, qtyScale, FixedPoint.SCALE);
         } else {
-            asset = order.getSymbol().replaceAll("[A-Z]+$", "");
-            amount = order.getQuantity().subtract(order.getFilledQty());
+            asset = symbolRegistry.baseAsset(symbolId);
+            amount = FixedPoint.rescale(remainQty, qtyScale, FixedPoint.SCALE);
         }
 
-        Balance balance = getBalance(order.getUserId(), asset);
-        balance.setFrozen(balance.getFrozen().subtract(amount));
-        balance.setAvailable(balance.getAvailable().add(amount));
-        balance.setUpdateTime(System.currentTimeMillis());
+        balanceLedger.unfreeze(order.getUserId(), asset, amount);
 
-        saveBalance(balance);
-
-        log.info("Asset unfrozen: userId={}, asset={}, amount={}", order.getUserId(), asset, amount);
+        log.info("Asset unfrozen: userId={}, asset={}, amount={}", order.getUserId(), symbolRegistry.assetName(asset),
+                FixedPoint.toPlainString(amount, FixedPoint.SCALE));
     }
 
+    /**
+     * 成交结算，order为已累加本次成交数量后的订单
+     *
+     * 买单按限价解冻本次成交对应的冻结额：成交前后未成交部分冻结额之差（与下单冻结、改单、撤单解冻用同一公式），
+     * 各次成交解冻额相加正好等于下单时冻结的金额，不会因每笔单独舍入而多解冻；按成交价计算的实际花费从中扣除，
+     * 差额（价格改善）退回可用。
+     */
     public void updateAssetOnTrade(Trade trade, Order order) {
         String userId = order.getUserId();
+        int symbolId = symbolRegistry.requireSymbolId(order.getSymbol());
+        int priceScale = symbolRegistry.priceScale(symbolId);
+        int qtyScale = symbolRegistry.qtyScale(symbolId);
+        int baseAsset = symbolRegistry.baseAsset(symbolId);
+        int quoteAsset = symbolRegistry.quoteAsset(symbolId);
+
+        long price = FixedPoint.toLong(trade.getPrice(), priceScale);
+        long quantity = FixedPoint.toLong(trade.getQuantity(), qtyScale);
+        long fee = FixedPoint.toLong(trade.getFee(), FixedPoint.SCALE);
+        long baseAmount = FixedPoint.rescale(quantity, qtyScale, FixedPoint.SCALE);
+        long quoteAmount = FixedPoint.multiply(price, priceScale, quantity, qtyScale, FixedPoint.SCALE);
 
         if (order.getSide() == OrderSide.BUY) {
-            // 买入：扣除冻结的计价货币，增加基础货币
-            String quoteAsset = order.getSymbol().replaceAll("^[A-Z]+", "");
-            String baseAsset = order.getSymbol().replaceAll("[A-Z]+$", "");
-
-            // 扣除冻结的计价货币
-            BigDecimal cost = trade.getPrice().multiply(trade.getQuantity());
-            Balance quoteBalance = getBalance(userId, quoteAsset);
-            quoteBalance.setFrozen(quoteBalance.getFrozen().subtract(cost));
-            quoteBalance.setUpdateTime(System.currentTimeMillis());
-            saveBalance(quoteBalance);
-
-            // 增加基础货币（扣除手续费）
-            BigDecimal receivedQty = trade.getQuantity().subtract(trade.getFee());
-            Balance baseBalance = getBalance(userId, baseAsset);
-            baseBalance.setAvailable(baseBalance.getAvailable().add(receivedQty));
-            baseBalance.setUpdateTime(System.currentTimeMillis());
-            saveBalance(baseBalance);
-
-            // 记录流水
-            recordFlow(userId, quoteAsset, FlowType.TRADE_OUT, cost.negate(),
-                    quoteBalance.getAvailable(), trade.getTradeId(), "Buy " + order.getSymbol());
-            recordFlow(userId, baseAsset, FlowType.TRADE_IN, receivedQty,
-                    baseBalance.getAvailable(), trade.getTradeId(), "Buy " + order.getSymbol());
-            recordFlow(userId, baseAsset, FlowType.FEE, trade.getFee().negate(),
-                    baseBalance.getAvailable(), trade.getTradeId(), "Trade fee");
-
+            // 买入：解冻本次成交对应的计价货币，扣除实际花费，增加基础货币（扣除手续费）
+            long remainAfter = FixedPoint.toLong(order.getQuantity(), qtyScale)
+                    - FixedPoint.toLong(order.getFilledQty(), qtyScale);
+            long limitPrice = FixedPoint.toLong(order.getPrice(), priceScale);
+            long frozenAmount = FixedPoint.multiply(limitPrice, priceScale, remainAfter + quantity, qtyScale, FixedPoint.SCALE)
+                    - FixedPoint.multiply(limitPrice, priceScale, remainAfter, qtyScale, FixedPoint.SCALE);
+            // 成交价不高于限价，两者只差舍入的1个最小单位，不在冻结之外再扣可用
+            long cost = Math.min(quoteAmount, frozenAmount);
+            balanceLedger.settle(userId, quoteAsset, frozenAmount, cost, baseAsset, baseAmount - fee, fee,
+                    trade.getTradeId(), "Buy " + order.getSymbol());
         } else {
-            // 卖出：扣除冻结的基础货币，增加计价货币
-            String baseAsset = order.getSymbol().replaceAll("[A-Z]+$", "");
-            String quoteAsset = order.getSymbol().replaceAll("^[A-Z]+", "");
-
-            // 扣除冻结的基础货币
-            Balance baseBalance = getBalance(userId, baseAsset);
-            baseBalance.setFrozen(baseBalance.getFrozen().subtract(trade.getQuantity()));
-            baseBalance.setUpdateTime(System.currentTimeMillis());
-            saveBalance(baseBalance);
-
-            // 增加计价货币（扣除手续费）
-            BigDecimal receivedAmount = trade.getPrice().multiply(trade.getQuantity()).subtract(trade.getFee());
-            Balance quoteBalance = getBalance(userId, quoteAsset);
-            quoteBalance.setAvailable(quoteBalance.getAvailable().add(receivedAmount));
-            quoteBalance.setUpdateTime(System.currentTimeMillis());
-            saveBalance(quoteBalance);
-
-            // 记录流水
-            recordFlow(userId, baseAsset, FlowType.TRADE_OUT, trade.getQuantity().negate(),
-                    baseBalance.getAvailable(), trade.getTradeId(), "Sell " + order.getSymbol());
-            recordFlow(userId, quoteAsset, FlowType.TRADE_IN, receivedAmount,
-                    quoteBalance.getAvailable(), trade.getTradeId(), "Sell " + order.getSymbol());
-            recordFlow(userId, quoteAsset, FlowType.FEE, trade.getFee().negate(),
-                    quoteBalance.getAvailable(), trade.getTradeId(), "Trade fee");
+            // 卖出：扣除冻结的基础货币，增加计价货币（扣除手续费）
+            balanceLedger.settle(userId, baseAsset, baseAmount, baseAmount, quoteAsset, quoteAmount - fee, fee,
+                    trade.getTradeId(), "Sell " + order.getSymbol());
         }
 
         log.info("Asset updated on trade: userId={}, tradeId={}", userId, trade.getTradeId());
     }
 
-    public List<AssetFlow> getFlowList(String userId, String asset, Integer limit) {
-        String key = flowPrefix + "user:" + userId;
-        if (asset != null) {
-            key += ":" + asset;
+    /**
+     * 按时间倒序分页查询资金流水，只从Redis读取请求的一页
+     */
+    public CursorPage<AssetFlow> getFlowList(String userId, String asset, Long fromTime, Long toTime,
+                                             String cursor, Integer limit) {
+        migrateLegacyFlowList(userId);
+
+        RScoredSortedSet<String> index = redissonClient.getScoredSortedSet(flowJournal.indexKey(userId, asset));
+        CursorPage<String> idPage = CursorPager.pageByTimeDesc(index, fromTime, toTime, cursor, limit);
+        List<String> flowIds = idPage.getItems();
+        if (flowIds.isEmpty()) {
+            return CursorPage.of(new ArrayList<>(), idPage.getNextCursor());
         }
 
-        RList<AssetFlow> flowList = redissonClient.getList(key);
-        List<AssetFlow> flows = new ArrayList<>(flowList);
+        RMap<String, AssetFlow> flowData = redissonClient.getMap(flowJournal.dataKey(userId));
+        Map<String, AssetFlow> found = flowData.getAll(new HashSet<>(flowIds));
 
-        if (limit != null && flows.size() > limit) {
-            return flows.subList(flows.size() - limit, flows.size());
+        List<AssetFlow> flows = new ArrayList<>(flowIds.size());
+        for (String flowId : flowIds) {
+            AssetFlow flow = found.get(flowId);
+            if (flow != null) {
+                flows.add(flow);
+            }
         }
-
-        return flows;
-    }
-
-    private void saveBalance(Balance balance) {
-        String key = balancePrefix + balance.getUserId() + ":" + balance.getAsset();
-        RMap<String, Object> balanceMap = redissonClient.getMap(key);
-
-        balanceMap.put("available", balance.getAvailable().toString());
-        balanceMap.put("frozen", balance.getFrozen().toString());
-        balanceMap.put("updateTime", balance.getUpdateTime().toString());
-    }
-
-    private void recordFlow(String userId, String asset, FlowType flowType, BigDecimal amount,
-                           BigDecimal balance, String relatedId, String description) {
-        AssetFlow flow = new AssetFlow();
-        flow.setFlowId(generateFlowId());
-        flow.setUserId(userId);
-        flow.setAsset(asset);
-        flow.setFlowType(flowType);
-        flow.setAmount(amount);
-        flow.setBalance(balance);
-        flow.setRelatedId(relatedId);
-        flow.setDescription(description);
-        flow.setCreateTime(System.currentTimeMillis());
-
-        String key = flowPrefix + "user:" + userId;
-        RList<AssetFlow> flowList = redissonClient.getList(key);
-        flowList.add(flow);
-
-        String assetKey = flowPrefix + "user:" + userId + ":" + asset;
-        RList<AssetFlow> assetFlowList = redissonClient.getList(assetKey);
-        assetFlowList.add(flow);
-
-        log.debug("Flow recorded: userId={}, asset={}, type={}, amount={}",
-                userId, asset, flowType, amount);
+        return CursorPage.of(flows, idPage.getNextCursor());
     }
 
-    private String generateFlowId() {
-        return "FLOW" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8);
+    /**
+     * 迁移前写入的流水list（trading:flow:user:{userId}，各币种list是它的子集）一次性写入新的索引和数据hash，写完后删除旧list。
+     * HSET/ZADD重复执行结果不变，并发迁移或迁移中途失败后重试都不会重复或丢失流水。
+     */
+    private void migrateLegacyFlowList(String userId) {
+        if (legacyFlowChecked.getIfPresent(userId) != null) {
+            return;
+        }
+        RList<AssetFlow> legacy = redissonClient.getList(flowPrefix + "user:" + userId);
+        int size = legacy.size();
+        Set<String> assets = new HashSet<>();
+        for (int from = 0; from < size; from += LEGACY_FLOW_CHUNK) {
+            List<AssetFlow> flows = legacy.range(from, Math.min(from + LEGACY_FLOW_CHUNK, size) - 1);
+            RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+            for (AssetFlow flow : flows) {
+                long createTime = flow.getCreateTime() != null ? flow.getCreateTime() : 0L;
+                batch.<String, AssetFlow>getMap(flowJournal.dataKey(userId)).fastPutAsync(flow.getFlowId(), flow);
+                batch.<String>getScoredSortedSet(flowJournal.indexKey(userId, null)).addAsync(createTime, flow.getFlowId());
+                batch.<String>getScoredSortedSet(flowJournal.indexKey(userId, flow.getAsset()))
+                        .addAsync(createTime, flow.getFlowId());
+                assets.add(flow.getAsset());
+            }
+            batch.execute();
+        }
+        if (size > 0) {
+            List<String> keys = new ArrayList<>();
+            keys.add(flowPrefix + "user:" + userId);
+            for (String asset : assets) {
+                keys.add(flowPrefix + "user:" + userId + ":" + asset);
+            }
+            redissonClient.getKeys().delete(keys.toArray(new String[0]));
+            log.info("Migrated legacy flow list: userId={}, flows={}", userId, size);
+        }
+        legacyFlowChecked.put(userId, Boolean.TRUE);
     }
 }
@@ -0,0 +1,813 @@
+package com.uex.trading.asset;
+
+import com.uex.trading.common.FixedPoint;
+import com.uex.trading.common.FlowType;
+import com.uex.trading.common.IdGenerator;
+import com.uex.trading.symbol.SymbolRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RMap;
+import org.redisson.api.RScript;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 内存余额账本
+ *
+ * 余额以内存为准，按userId + 币种id（{@link SymbolRegistry}）索引，金额为 {@link FixedPoint#SCALE} 位小数的long，按userId分片，每个分片只有一个写线程，同一用户的所有资金操作在该线程上串行执行，
+ * 不需要加锁也不会出现并发覆盖。下单和成交路径不再等待Redis。
+ *
+ * 每次账本操作生成一条回写记录，由分片线程定时批量回写：每条记录对应一次预加载的
+ * balance-apply.lua（EVALSHA），在Redis端原子完成余额校验和余额写入。
+ * 资金流水交给 {@link FlowJournal} 单独攒批写入。
+ * 余额hash带version字段，重试已应用过的记录不会重复记账；版本不连续或Redis中余额不足说明内存与Redis已不一致，
+ * 该记录会被拒绝并计入asset.ledger.rejected指标告警。被拒绝记录涉及的余额按内存对账：Redis上相对最近一次确认写入的外部改动叠加到内存余额，
+ * 再以Redis当前版本为基础整体写回内存余额，基于旧版本的待回写记录由这次写回取代，已应用到内存的操作不会丢失，对账次数计入asset.ledger.reconciled。
+ *
+ * 每个用户有币种索引set（trading:asset:{userId}），由balance-apply.lua在写入余额时维护，
+ * 查询全部余额时用balance-all.lua一次读出，不再扫描keyspace。索引上线前的旧余额在用户第一次查询时回填。
+ *
+ * 注意：同一用户的余额只能由一个服务实例修改。
+ */
+@Slf4j
+@Component
+public class BalanceLedger {
+
+    private static final String APPLY_SCRIPT = "lua/balance-apply.lua";
+    private static final String ALL_SCRIPT = "lua/balance-all.lua";
+    private static final String INDEXED_MARKER = "*";
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    @Autowired
+    private FlowJournal flowJournal;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${redis.keys.balance-prefix}")
+    private String balancePrefix;
+
+    @Value("${redis.keys.asset-prefix}")
+    private String assetPrefix;
+
+    @Value("${asset.ledger.shards:8}")
+    private int shardCount;
+
+    @Value("${asset.ledger.flush-interval-ms:20}")
+    private long flushIntervalMs;
+
+    @Value("${asset.ledger.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    private String applyScript;
+    private volatile String applySha;
+    private String allScript;
+    private volatile String allSha;
+    private Shard[] shards;
+    private Counter rejected;
+    private Counter reconciled;
+
+    @PostConstruct
+    public void start() {
+        rejected = Counter.builder("asset.ledger.rejected").register(meterRegistry);
+        reconciled = Counter.builder("asset.ledger.reconciled").register(meterRegistry);
+        applyScript = readScript(APPLY_SCRIPT);
+        applySha = redissonClient.getScript(StringCodec.INSTANCE).scriptLoad(applyScript);
+        allScript = readScript(ALL_SCRIPT);
+        allSha = redissonClient.getScript(StringCodec.INSTANCE).scriptLoad(allScript);
+
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        log.info("Balance ledger started: shards={}, flushIntervalMs={}, flushBatchSize={}",
+                shardCount, flushIntervalMs, flushBatchSize);
+    }
+
+    public Balance getBalance(String userId, int assetId) {
+        Shard shard = shardOf(userId);
+        return shard.call(() -> shard.account(userId, assetId).snapshot());
+    }
+
+    /**
+     * 未注册币种的余额，直接读Redis，不分配币种id也不缓存
+     */
+    public Balance peekBalance(String userId, String asset) {
+        return load(userId, asset).snapshot();
+    }
+
+    /**
+     * 用户全部非零余额，每个用户第一次查询时从Redis加载一次，之后直接读内存
+     */
+    public List<Balance> getAllBalances(String userId) {
+        Shard shard = shardOf(userId);
+        return shard.call(() -> {
+            Account[] userAccounts = shard.loadAll(userId);
+            List<Balance> balances = new ArrayList<>();
+            for (Account account : userAccounts) {
+                if (account != null && (account.available != 0 || account.frozen != 0)) {
+                    balances.add(account.snapshot());
+                }
+            }
+            return balances;
+        });
+    }
+
+    /**
+     * 冻结：可用 -> 冻结，可用不足时抛出异常且余额不变
+     */
+    public void freeze(String userId, int assetId, long amount) {
+        if (amount <= 0) {
+            throw new RuntimeException("Freeze amount must be positive: " + amount);
+        }
+        Shard shard = shardOf(userId);
+        shard.call(() -> {
+            Account account = shard.account(userId, assetId);
+            if (account.available < amount) {
+                throw new RuntimeException("Insufficient balance: " + account.asset);
+            }
+            account.available -= amount;
+            account.frozen += amount;
+
+            Entry entry = new Entry();
+            entry.change(account, amount, 0L);
+            shard.append(entry);
+            return null;
+        });
+    }
+
+    /**
+     * 批量冻结：按顺序逐笔检查可用余额，余额不足或金额不为正的跳过，同一币种的冻结合并为一次回写
+     *
+     * @param assetIds 币种id，小于0表示该笔不冻结
+     * @return 每笔是否冻结成功
+     */
+    public boolean[] freezeAll(String userId, int[] assetIds, long[] amounts) {
+        Shard shard = shardOf(userId);
+        return shard.call(() -> {
+            boolean[] frozen = new boolean[assetIds.length];
+            Map<Account, Long> totals = new LinkedHashMap<>();
+            for (int i = 0; i < assetIds.length; i++) {
+                if (assetIds[i] < 0 || amounts[i] <= 0) {
+                    continue;
+                }
+                Account account = shard.account(userId, assetIds[i]);
+                if (account.available < amounts[i]) {
+                    continue;
+                }
+                account.available -= amounts[i];
+                account.frozen += amounts[i];
+                totals.merge(account, amounts[i], Long::sum);
+                frozen[i] = true;
+            }
+
+            if (!totals.isEmpty()) {
+                Entry entry = new Entry();
+                totals.forEach((account, amount) -> entry.change(account, amount, 0L));
+                shard.append(entry);
+            }
+            return frozen;
+        });
+    }
+
+    /**
+     * 解冻：冻结 -> 可用
+     */
+    public void unfreeze(String userId, int assetId, long amount) {
+        Shard shard = shardOf(userId);
+        shard.call(() -> {
+            Account account = shard.account(userId, assetId);
+            account.frozen -= amount;
+            account.available += amount;
+
+            Entry entry = new Entry();
+            entry.change(account, 0L, amount);
+            shard.append(entry);
+            return null;
+        });
+    }
+
+    /**
+     * 成交结算：debitAsset解冻frozenAmount，其中debitAmount扣除、剩余部分退回可用；增加creditAsset的可用金额（已扣除手续费），
+     * 同时生成转出、转入、手续费三条流水
+     *
+     * @param frozenAmount 本次成交对应的冻结金额，不小于debitAmount
+     */
+    public void settle(String userId, int debitAsset, long frozenAmount, long debitAmount,
+                       int creditAsset, long creditAmount, long fee,
+                       String relatedId, String description) {
+        Shard shard = shardOf(userId);
+        shard.call(() -> {
+            Account debit = shard.account(userId, debitAsset);
+            debit.frozen -= frozenAmount;
+            debit.available += frozenAmount - debitAmount;
+
+            Account credit = shard.account(userId, creditAsset);
+            credit.available += creditAmount;
+
+            Entry entry = new Entry();
+            entry.change(debit, 0L, frozenAmount);
+            entry.change(credit, 0L, 0L);
+            shard.append(entry);
+
+            flowJournal.append(newFlow(debit, FlowType.TRADE_OUT, -debitAmount, relatedId, description));
+            flowJournal.append(newFlow(credit, FlowType.TRADE_IN, creditAmount, relatedId, description));
+            flowJournal.append(newFlow(credit, FlowType.FEE, -fee, relatedId, "Trade fee"));
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down balance ledger, flushing pending entries");
+        if (shards == null) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    private Shard shardOf(String userId) {
+        return shards[(userId.hashCode() & 0x7fffffff) % shards.length];
+    }
+
+    private String balanceKey(String userId, String asset) {
+        return balancePrefix + userId + ":" + asset;
+    }
+
+    private String assetIndexKey(String userId) {
+        return assetPrefix + userId;
+    }
+
+    private static String readScript(String path) {
+        try {
+            return StreamUtils.copyToString(new ClassPathResource(path).getInputStream(), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load ledger script: " + path, e);
+        }
+    }
+
+    private AssetFlow newFlow(Account account, FlowType flowType, long amount,
+                              String relatedId, String description) {
+        AssetFlow flow = new AssetFlow();
+        flow.setFlowId(generateFlowId());
+        flow.setUserId(account.userId);
+        flow.setAsset(account.asset);
+        flow.setFlowType(flowType);
+        flow.setAmount(FixedPoint.toDecimal(amount, FixedPoint.SCALE));
+        flow.setBalance(FixedPoint.toDecimal(account.available, FixedPoint.SCALE));
+        flow.setRelatedId(relatedId);
+        flow.setDescription(description);
+        flow.setCreateTime(account.updateTime);
+        return flow;
+    }
+
+    private String generateFlowId() {
+        return idGenerator.nextIdString();
+    }
+
+    private Account load(String userId, String asset) {
+        String key = balanceKey(userId, asset);
+        RMap<String, String> balanceMap = redissonClient.getMap(key, StringCodec.INSTANCE);
+        Map<String, String> fields = balanceMap.readAllMap();
+
+        Account account = new Account(userId, asset);
+        if (fields.isEmpty()) {
+            account.updateTime = System.currentTimeMillis();
+        } else if (fields.containsKey("available")) {
+            account.read(fields.get("available"), fields.get("frozen"), fields.get("updateTime"), fields.get("version"));
+        } else {
+            migrateLegacy(account, key);
+        }
+        account.confirm(account.version, account.available, account.frozen);
+        return account;
+    }
+
+    /**
+     * 执行balance-all.lua，返回 {indexed, asset, available, frozen, updateTime, version, ...}
+     */
+    private List<Object> readAll(String userId) {
+        List<Object> keys = Collections.singletonList(assetIndexKey(userId));
+        Object[] args = {balancePrefix + userId + ":"};
+        RScript script = redissonClient.getScript(StringCodec.INSTANCE);
+        try {
+            return script.evalSha(RScript.Mode.READ_ONLY, allSha, RScript.ReturnType.MULTI, keys, args);
+        } catch (RedisException e) {
+            if (!String.valueOf(e.getMessage()).contains("NOSCRIPT")) {
+                throw e;
+            }
+            allSha = script.scriptLoad(allScript);
+            return script.evalSha(RScript.Mode.READ_ONLY, allSha, RScript.ReturnType.MULTI, keys, args);
+        }
+    }
+
+    /**
+     * 索引上线前写入的余额不在索引里，扫描一次该用户的余额key回填，回填完成后写入标记
+     */
+    private List<String> backfillIndex(String userId) {
+        String prefix = balancePrefix + userId + ":";
+        List<String> assets = new ArrayList<>();
+        for (String key : redissonClient.getKeys().getKeysByPattern(prefix + "*")) {
+            assets.add(key.substring(prefix.length()));
+        }
+
+        RSet<String> index = redissonClient.getSet(assetIndexKey(userId), StringCodec.INSTANCE);
+        List<String> members = new ArrayList<>(assets);
+        members.add(INDEXED_MARKER);
+        index.addAll(members);
+
+        log.info("Backfilled asset index: userId={}, assets={}", userId, assets);
+        return assets;
+    }
+
+    /**
+     * 旧版本通过默认codec写入余额hash，脚本无法读取，首次加载时改写为纯字符串字段
+     */
+    private void migrateLegacy(Account account, String key) {
+        RMap<String, Object> legacyMap = redissonClient.getMap(key);
+        Map<String, Object> legacy = legacyMap.readAllMap();
+        account.available = parseAmount(legacy.get("available").toString());
+        account.frozen = parseAmount(legacy.get("frozen").toString());
+        account.updateTime = Long.parseLong(legacy.get("updateTime").toString());
+
+        Map<String, String> fields = new HashMap<>(4);
+        fields.put("available", FixedPoint.toPlainString(account.available, FixedPoint.SCALE));
+        fields.put("frozen", FixedPoint.toPlainString(account.frozen, FixedPoint.SCALE));
+        fields.put("updateTime", String.valueOf(account.updateTime));
+        fields.put("version", "0");
+
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults()
+                .executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+        batch.getMap(key, StringCodec.INSTANCE).deleteAsync();
+        batch.<String, String>getMap(key, StringCodec.INSTANCE).putAllAsync(fields);
+        batch.execute();
+
+        log.info("Migrated legacy balance hash: key={}", key);
+    }
+
+    private static long parseAmount(String value) {
+        return FixedPoint.toLong(new BigDecimal(value), FixedPoint.SCALE);
+    }
+
+    static final class Account {
+        final String userId;
+        final String asset;
+        long available;
+        long frozen;
+        long updateTime;
+        long version;
+        /**
+         * 最近一次确认已写入Redis的余额，对账时用来区分外部改动
+         */
+        long confirmedAvailable;
+        long confirmedFrozen;
+        long confirmedVersion;
+
+        Account(String userId, String asset) {
+            this.userId = userId;
+            this.asset = asset;
+        }
+
+        void read(String available, String frozen, String updateTime, String version) {
+            this.available = parseAmount(available);
+            this.frozen = parseAmount(frozen);
+            this.updateTime = Long.parseLong(updateTime);
+            this.version = version != null ? Long.parseLong(version) : 0L;
+            confirm(this.version, this.available, this.frozen);
+        }
+
+        void confirm(long version, long available, long frozen) {
+            if (version >= confirmedVersion) {
+                confirmedVersion = version;
+                confirmedAvailable = available;
+                confirmedFrozen = frozen;
+            }
+        }
+
+        Balance snapshot() {
+            Balance balance = new Balance();
+            balance.setUserId(userId);
+            balance.setAsset(asset);
+            balance.setAvailable(FixedPoint.toDecimal(available, FixedPoint.SCALE));
+            balance.setFrozen(FixedPoint.toDecimal(frozen, FixedPoint.SCALE));
+            balance.setUpdateTime(updateTime);
+            return balance;
+        }
+    }
+
+    /**
+     * 一次账本操作的回写记录，保存操作完成时的余额快照，对应一次脚本调用
+     */
+    private final class Entry {
+        private final List<Account> accounts = new ArrayList<>(4);
+        private final List<long[]> states = new ArrayList<>(4);
+        private final List<Object> keys = new ArrayList<>(8);
+        private final List<byte[]> balanceArgs = new ArrayList<>(14);
+        private int balanceCount;
+        private String userId;
+
+        void change(Account account, long availableOut, long frozenOut) {
+            account.version++;
+            account.updateTime = System.currentTimeMillis();
+
+            accounts.add(account);
+            states.add(new long[]{account.version, account.available, account.frozen});
+            keys.add(balanceKey(account.userId, account.asset));
+            balanceArgs.add(bytes(String.valueOf(account.version)));
+            balanceArgs.add(bytes(FixedPoint.toPlainString(availableOut, FixedPoint.SCALE)));
+            balanceArgs.add(bytes(FixedPoint.toPlainString(frozenOut, FixedPoint.SCALE)));
+            balanceArgs.add(bytes(FixedPoint.toPlainString(account.available, FixedPoint.SCALE)));
+            balanceArgs.add(bytes(FixedPoint.toPlainString(account.frozen, FixedPoint.SCALE)));
+            balanceArgs.add(bytes(String.valueOf(account.updateTime)));
+            balanceArgs.add(bytes(account.asset));
+            balanceCount++;
+            userId = account.userId;
+        }
+
+        /**
+         * Redis已应用该记录（包括重试时脚本判定已应用过）
+         */
+        void confirmed() {
+            for (int i = 0; i < accounts.size(); i++) {
+                long[] state = states.get(i);
+                accounts.get(i).confirm(state[0], state[1], state[2]);
+            }
+        }
+
+        void addTo(RBatch batch) {
+            List<Object> allKeys = new ArrayList<>(keys.size() + 1);
+            allKeys.addAll(keys);
+            allKeys.add(assetIndexKey(userId));
+
+            Object[] args = new Object[1 + balanceArgs.size()];
+            args[0] = bytes(String.valueOf(balanceCount));
+            int i = 1;
+            for (byte[] arg : balanceArgs) {
+                args[i++] = arg;
+            }
+
+            batch.getScript(ByteArrayCodec.INSTANCE).evalShaAsync(RScript.Mode.READ_WRITE, applySha,
+                    RScript.ReturnType.INTEGER, allKeys, args);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry" + keys;
+        }
+
+        private byte[] bytes(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 账本分片：accounts和pending队列只在分片线程上访问
+     */
+    private final class Shard {
+        private final ScheduledExecutorService executor;
+        private final Map<String, Account[]> accounts = new HashMap<>();
+        private final Set<String> fullyLoaded = new HashSet<>();
+        private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+        private final Set<Account> unreconciled = new HashSet<>();
+        private volatile Thread thread;
+        private RFuture<BatchResult<?>> inFlight;
+        private List<Entry> inFlightEntries;
+
+        Shard(int index) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "balance-ledger-" + index);
+                t.setDaemon(true);
+                thread = t;
+                return t;
+            });
+            executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        <T> T call(Supplier<T> operation) {
+            if (Thread.currentThread() == thread) {
+                return operation.get();
+            }
+            CompletableFuture<T> future = CompletableFuture.supplyAsync(operation, executor);
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException("Ledger operation failed", cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for ledger operation", e);
+            }
+        }
+
+        Account account(String userId, int assetId) {
+            Account account = cached(userId, assetId);
+            if (account == null) {
+                account = load(userId, symbolRegistry.assetName(assetId));
+                put(userId, assetId, account);
+            }
+            return account;
+        }
+
+        /**
+         * 加载用户在Redis中的全部余额，已在内存中的余额以内存为准
+         */
+        Account[] loadAll(String userId) {
+            if (fullyLoaded.contains(userId)) {
+                return accounts.getOrDefault(userId, new Account[0]);
+            }
+
+            List<Object> result = readAll(userId);
+            for (int i = 1; i + 4 < result.size(); i += 5) {
+                String asset = (String) result.get(i);
+                int assetId = symbolRegistry.internAsset(asset);
+                if (cached(userId, assetId) != null) {
+                    continue;
+                }
+                if (result.get(i + 1) == null) {
+                    // 旧格式余额，走单个加载并迁移
+                    account(userId, assetId);
+                    continue;
+                }
+                Account account = new Account(userId, asset);
+                account.read((String) result.get(i + 1), (String) result.get(i + 2),
+                        (String) result.get(i + 3), (String) result.get(i + 4));
+                put(userId, assetId, account);
+            }
+
+            if (((Number) result.get(0)).longValue() == 0) {
+                for (String asset : backfillIndex(userId)) {
+                    account(userId, symbolRegistry.internAsset(asset));
+                }
+            }
+
+            fullyLoaded.add(userId);
+            return accounts.getOrDefault(userId, new Account[0]);
+        }
+
+        private Account cached(String userId, int assetId) {
+            Account[] userAccounts = accounts.get(userId);
+            return userAccounts != null && userAccounts.length > assetId ? userAccounts[assetId] : null;
+        }
+
+        private void put(String userId, int assetId, Account account) {
+            Account[] userAccounts = accounts.get(userId);
+            if (userAccounts == null || userAccounts.length <= assetId) {
+                int size = Math.max(assetId + 1, userAccounts == null ? 8 : userAccounts.length * 2);
+                userAccounts = userAccounts == null ? new Account[size] : Arrays.copyOf(userAccounts, size);
+                accounts.put(userId, userAccounts);
+            }
+            userAccounts[assetId] = account;
+        }
+
+        void append(Entry entry) {
+            pending.add(entry);
+        }
+
+        /**
+         * 回写待处理记录，同一分片同时只有一个批次在途，保证同一个余额的写入顺序
+         */
+        private void flush() {
+            if (inFlight != null) {
+                return;
+            }
+            if (!unreconciled.isEmpty()) {
+                resync(new HashSet<>(unreconciled));
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+
+            List<Entry> flushed = drain();
+            try {
+                RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+                flushed.forEach(entry -> entry.addTo(batch));
+                RFuture<BatchResult<?>> future = batch.executeAsync();
+                inFlight = future;
+                inFlightEntries = flushed;
+                future.whenComplete((result, error) -> executor.execute(() -> {
+                    if (inFlight != future) {
+                        return;
+                    }
+                    inFlight = null;
+                    inFlightEntries = null;
+                    if (error != null) {
+                        retry(flushed, error);
+                    } else {
+                        checkResults(flushed, result.getResponses());
+                    }
+                }));
+            } catch (Exception e) {
+                // 定时任务抛异常会被取消，这里必须吞掉
+                retry(flushed, e);
+            }
+        }
+
+        private List<Entry> drain() {
+            List<Entry> drained = new ArrayList<>(Math.min(pending.size(), flushBatchSize));
+            while (!pending.isEmpty() && drained.size() < flushBatchSize) {
+                drained.add(pending.poll());
+            }
+            return drained;
+        }
+
+        /**
+         * 批次失败时整批放回队首重试，已应用过的记录会被脚本按version跳过
+         */
+        private void retry(List<Entry> flushed, Throwable error) {
+            log.error("Failed to flush {} ledger entries, will retry", flushed.size(), error);
+            try {
+                if (String.valueOf(error.getMessage()).contains("NOSCRIPT")) {
+                    applySha = redissonClient.getScript(StringCodec.INSTANCE).scriptLoad(applyScript);
+                }
+            } catch (Exception e) {
+                log.error("Failed to reload ledger script", e);
+            }
+            for (int i = flushed.size() - 1; i >= 0; i--) {
+                pending.addFirst(flushed.get(i));
+            }
+        }
+
+        private void checkResults(List<Entry> flushed, List<?> responses) {
+            Set<Account> diverged = new HashSet<>();
+            for (int i = 0; i < responses.size(); i++) {
+                long code = ((Number) responses.get(i)).longValue();
+                if (code < 0) {
+                    log.error("Ledger entry rejected by Redis, balance version or amount mismatch: {}, balanceIndex={}",
+                            flushed.get(i), -code);
+                    rejected.increment();
+                    diverged.addAll(flushed.get(i).accounts);
+                } else {
+                    flushed.get(i).confirmed();
+                }
+            }
+            if (!diverged.isEmpty()) {
+                resync(diverged);
+            }
+        }
+
+        /**
+         * 被拒绝的记录没有写入Redis，但内存中的余额和version已经前进，之后该余额的每次写入都会因版本不连续被拒。
+         * 内存余额为准：涉及这些余额的待回写记录（及其涉及的其他余额）不再单独回写，改为每个余额一条对账记录，
+         * 以Redis当前版本为基础写入内存余额；Redis在最近一次确认写入之后的外部改动先叠加到内存余额，
+         * Redis版本低于已确认版本说明Redis丢了已确认的写入，此时不叠加。
+         * 读Redis失败时不做任何改动，下一次回写前重试。在途批次已完成才会调用，不会与其他批次交错。
+         */
+        private void resync(Set<Account> diverged) {
+            Set<Entry> superseded = new HashSet<>();
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Entry entry : pending) {
+                    if (!superseded.contains(entry) && entry.accounts.stream().anyMatch(diverged::contains)) {
+                        superseded.add(entry);
+                        changed |= diverged.addAll(entry.accounts);
+                    }
+                }
+            }
+
+            Map<Account, Account> stored = new LinkedHashMap<>();
+            for (Account account : diverged) {
+                try {
+                    stored.put(account, load(account.userId, account.asset));
+                } catch (Exception e) {
+                    log.error("Failed to read balance for reconciliation, will retry: userId={}, asset={}",
+                            account.userId, account.asset, e);
+                    unreconciled.addAll(diverged);
+                    return;
+                }
+            }
+            unreconciled.removeAll(diverged);
+
+            for (Iterator<Entry> it = pending.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (superseded.contains(entry)) {
+                    it.remove();
+                    log.warn("Pending ledger entry superseded by reconciliation, its change is kept in memory: {}", entry);
+                }
+            }
+
+            stored.forEach((account, redis) -> {
+                long externalAvailable = 0L;
+                long externalFrozen = 0L;
+                if (redis.version >= account.confirmedVersion) {
+                    externalAvailable = redis.available - account.confirmedAvailable;
+                    externalFrozen = redis.frozen - account.confirmedFrozen;
+                }
+                log.error("Reconciling balance with Redis: userId={}, asset={}, memory={}/{}@v{}, confirmed={}/{}@v{}, "
+                                + "redis={}/{}@v{}, external={}/{}",
+                        account.userId, account.asset,
+                        FixedPoint.toPlainString(account.available, FixedPoint.SCALE),
+                        FixedPoint.toPlainString(account.frozen, FixedPoint.SCALE), account.version,
+                        FixedPoint.toPlainString(account.confirmedAvailable, FixedPoint.SCALE),
+                        FixedPoint.toPlainString(account.confirmedFrozen, FixedPoint.SCALE), account.confirmedVersion,
+                        FixedPoint.toPlainString(redis.available, FixedPoint.SCALE),
+                        FixedPoint.toPlainString(redis.frozen, FixedPoint.SCALE), redis.version,
+                        FixedPoint.toPlainString(externalAvailable, FixedPoint.SCALE),
+                        FixedPoint.toPlainString(externalFrozen, FixedPoint.SCALE));
+
+                account.available += externalAvailable;
+                account.frozen += externalFrozen;
+                if (account.available < 0 || account.frozen < 0) {
+                    log.error("Balance negative after reconciliation: userId={}, asset={}, available={}, frozen={}",
+                            account.userId, account.asset,
+                            FixedPoint.toPlainString(account.available, FixedPoint.SCALE),
+                            FixedPoint.toPlainString(account.frozen, FixedPoint.SCALE));
+                }
+                account.version = redis.version;
+                account.confirmedVersion = redis.version;
+                account.confirmedAvailable = redis.available;
+                account.confirmedFrozen = redis.frozen;
+
+                Entry entry = new Entry();
+                entry.change(account, 0L, 0L);
+                pending.addFirst(entry);
+                reconciled.increment();
+            });
+        }
+
+        /**
+         * 等待在途批次完成，失败则放回队首，保证停机回写不会越过在途记录
+         */
+        private void awaitInFlight() {
+            if (inFlight == null) {
+                return;
+            }
+            RFuture<BatchResult<?>> future = inFlight;
+            List<Entry> entries = inFlightEntries;
+            inFlight = null;
+            inFlightEntries = null;
+            try {
+                checkResults(entries, future.toCompletableFuture().join().getResponses());
+            } catch (Exception e) {
+                retry(entries, e);
+            }
+        }
+
+        /**
+         * 停机时同步回写剩余记录
+         */
+        void close() {
+            try {
+                executor.submit(() -> {
+                    awaitInFlight();
+                    while (!pending.isEmpty()) {
+                        List<Entry> flushed = drain();
+                        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+                        flushed.forEach(entry -> entry.addTo(batch));
+                        checkResults(flushed, batch.execute().getResponses());
+                    }
+                }).get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.error("Failed to flush ledger entries on shutdown", e);
+            }
+            executor.shutdown();
+        }
+    }
+}
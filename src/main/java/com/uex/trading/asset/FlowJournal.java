@@ -0,0 +1,170 @@
+package com.uex.trading.asset;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资金流水日志
+ *
+ * 流水先进入有界队列，由单独的线程按数量或时间攒批，用RBatch流水线写入Redis：
+ * - trading:flow:data:{userId}            Hash: flowId -> AssetFlow，每条流水只存一份
+ * - trading:flow:index:{userId}           ZSet: flowId，score为创建时间
+ * - trading:flow:index:{userId}:{asset}   ZSet: 指定币种的flowId
+ *
+ * 队列满时写入方阻塞等待，流水不会被丢弃。写入失败整批重试，HSET/ZADD重复执行结果不变。
+ * 停机时只置停止标志并等待写线程把已取出的批次和队列中剩余的流水写完，不中断写线程。
+ */
+@Slf4j
+@Component
+public class FlowJournal {
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Value("${redis.keys.flow-prefix}")
+    private String flowPrefix;
+
+    @Value("${asset.flow-journal.capacity:65536}")
+    private int capacity;
+
+    @Value("${asset.flow-journal.batch-size:500}")
+    private int batchSize;
+
+    @Value("${asset.flow-journal.flush-interval-ms:10}")
+    private long flushIntervalMs;
+
+    @Value("${asset.flow-journal.retry-interval-ms:1000}")
+    private long retryIntervalMs;
+
+    private BlockingQueue<AssetFlow> queue;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "flow-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Flow journal started: capacity={}, batchSize={}, flushIntervalMs={}",
+                capacity, batchSize, flushIntervalMs);
+    }
+
+    public void append(AssetFlow flow) {
+        try {
+            queue.put(flow);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while appending asset flow", e);
+        }
+    }
+
+    public String dataKey(String userId) {
+        return flowPrefix + "data:" + userId;
+    }
+
+    public String indexKey(String userId, String asset) {
+        String key = flowPrefix + "index:" + userId;
+        return asset == null ? key : key + ":" + asset;
+    }
+
+    private void writeLoop() {
+        List<AssetFlow> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    AssetFlow first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+
+                // 攒批：达到batchSize或等待超过flushIntervalMs即写入
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    AssetFlow next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                writeWithRetry(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // 已取出的流水留在batch中，下一轮继续写入
+                log.warn("Flow journal writer interrupted, keeping {} pending flows", batch.size());
+            }
+        }
+        log.info("Flow journal writer stopped");
+    }
+
+    /**
+     * 失败后按间隔重试；停机过程中再失败一次即放弃，避免停机无限等待
+     */
+    private void writeWithRetry(List<AssetFlow> flows) throws InterruptedException {
+        while (true) {
+            try {
+                write(flows);
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    log.error("Failed to write asset flows on shutdown, lost {} flows", flows.size(), e);
+                    return;
+                }
+                log.error("Failed to write {} asset flows, retrying in {} ms", flows.size(), retryIntervalMs, e);
+                Thread.sleep(retryIntervalMs);
+            }
+        }
+    }
+
+    private void write(List<AssetFlow> flows) {
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        for (AssetFlow flow : flows) {
+            String userId = flow.getUserId();
+            batch.<String, AssetFlow>getMap(dataKey(userId)).fastPutAsync(flow.getFlowId(), flow);
+            batch.<String>getScoredSortedSet(indexKey(userId, null)).addAsync(flow.getCreateTime(), flow.getFlowId());
+            batch.<String>getScoredSortedSet(indexKey(userId, flow.getAsset()))
+                    .addAsync(flow.getCreateTime(), flow.getFlowId());
+        }
+        batch.execute();
+        log.debug("Asset flows written: count={}", flows.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down flow journal");
+        running = false;
+        if (writerThread == null) {
+            return;
+        }
+        try {
+            writerThread.join(retryIntervalMs + 10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.error("Flow journal writer did not finish on shutdown, pending flows={}", queue.size());
+        }
+    }
+}
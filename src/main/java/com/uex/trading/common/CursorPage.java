@@ -0,0 +1,21 @@
+package com.uex.trading.common;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页结果，nextCursor为空表示没有下一页
+ */
+@Data
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+
+    public static <T> CursorPage<T> of(List<T> items, String nextCursor) {
+        CursorPage<T> page = new CursorPage<>();
+        page.setItems(items);
+        page.setNextCursor(nextCursor);
+        return page;
+    }
+}
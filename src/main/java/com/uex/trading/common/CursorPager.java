@@ -0,0 +1,123 @@
+package com.uex.trading.common;
+
+import org.redisson.api.RList;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.client.protocol.ScoredEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分页读取Redis中按时间排序的数据，每次只传输请求的一页
+ *
+ * 时间索引（ZSet，score为毫秒时间戳）按时间倒序翻页，游标格式为 "{time}:{skip}"：
+ * 下一页从score不大于time的位置开始，并跳过score等于time且已经返回过的skip条。
+ * List按写入顺序翻页，游标为下一页的起始下标。
+ */
+public final class CursorPager {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private CursorPager() {
+    }
+
+    public static int limit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * ZRANGEBYSCORE倒序翻页，返回[fromTime, toTime]内的成员，时间为空表示不限
+     */
+    public static <V> CursorPage<V> pageByTimeDesc(RScoredSortedSet<V> index, Long fromTime, Long toTime,
+                                                   String cursor, Integer limit) {
+        int size = limit(limit);
+        double min = fromTime != null ? fromTime : Double.NEGATIVE_INFINITY;
+        double max = toTime != null ? toTime : Double.POSITIVE_INFINITY;
+        int skip = 0;
+
+        if (cursor != null && !cursor.isEmpty()) {
+            int sep = cursor.indexOf(':');
+            long cursorTime;
+            try {
+                cursorTime = Long.parseLong(cursor.substring(0, sep));
+                skip = Integer.parseInt(cursor.substring(sep + 1));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Invalid cursor: " + cursor);
+            }
+            if (cursorTime <= max) {
+                max = cursorTime;
+            } else {
+                skip = 0;
+            }
+        }
+
+        List<ScoredEntry<V>> entries = new ArrayList<>(index.entryRangeReversed(min, true, max, true, skip, size + 1));
+        if (entries.size() <= size) {
+            return CursorPage.of(values(entries), null);
+        }
+
+        entries = entries.subList(0, size);
+        double lastScore = entries.get(size - 1).getScore();
+        int sameScore = 0;
+        for (int i = size - 1; i >= 0 && entries.get(i).getScore() == lastScore; i--) {
+            sameScore++;
+        }
+        if (sameScore == size && lastScore == max) {
+            // 整页都停留在同一时间戳上，需要累加上一页已跳过的条数
+            sameScore += skip;
+        }
+        return CursorPage.of(values(entries), (long) lastScore + ":" + sameScore);
+    }
+
+    /**
+     * LRANGE正序翻页
+     */
+    public static <V> CursorPage<V> pageByIndex(RList<V> list, String cursor, Integer limit) {
+        int size = limit(limit);
+        int start = parseIndex(cursor);
+        List<V> items = list.range(start, start + size);
+        if (items.size() <= size) {
+            return CursorPage.of(items, null);
+        }
+        return CursorPage.of(new ArrayList<>(items.subList(0, size)), String.valueOf(start + size));
+    }
+
+    /**
+     * LRANGE倒序翻页，从最新写入的一条开始
+     */
+    public static <V> CursorPage<V> pageByIndexDesc(RList<V> list, String cursor, Integer limit) {
+        int size = limit(limit);
+        int skip = parseIndex(cursor);
+        List<V> items = new ArrayList<>(list.range(-(skip + size + 1), -(skip + 1)));
+        Collections.reverse(items);
+        if (items.size() <= size) {
+            return CursorPage.of(items, null);
+        }
+        return CursorPage.of(new ArrayList<>(items.subList(0, size)), String.valueOf(skip + size));
+    }
+
+    private static int parseIndex(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static <V> List<V> values(Collection<ScoredEntry<V>> entries) {
+        List<V> values = new ArrayList<>(entries.size());
+        for (ScoredEntry<V> entry : entries) {
+            values.add(entry.getValue());
+        }
+        return values;
+    }
+}
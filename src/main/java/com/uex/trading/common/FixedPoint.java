@@ -0,0 +1,119 @@
+package com.uex.trading.common;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * long定点数运算
+ *
+ * 数值用 unscaled * 10^-scale 表示，价格和数量的scale来自交易对的tickSize/stepSize，
+ * 余额、流水金额和成交均价统一使用 {@link #SCALE} 位小数。
+ * BigDecimal只在REST/JSON/Redis边界上转换，热路径全部用long计算，舍入方式为HALF_UP。
+ */
+public final class FixedPoint {
+
+    /** 余额、金额、均价的小数位数 */
+    public static final int SCALE = 8;
+
+    private static final int MAX_SCALE = 18;
+
+    private static final long[] POW10 = new long[MAX_SCALE + 1];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    public static long pow10(int n) {
+        return POW10[n];
+    }
+
+    /**
+     * 步长对应的小数位数，如 0.01 -> 2，1 -> 0；步长为空时使用 {@link #SCALE}
+     */
+    public static int scaleOf(BigDecimal step) {
+        if (step == null || step.signum() == 0) {
+            return SCALE;
+        }
+        int scale = step.stripTrailingZeros().scale();
+        return Math.min(Math.max(scale, 0), MAX_SCALE);
+    }
+
+    public static long toLong(BigDecimal value, int scale) {
+        if (value == null) {
+            return 0L;
+        }
+        return value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 精确转换，小数位超过scale时抛出ArithmeticException，用于校验价格/数量精度
+     */
+    public static long toLongExact(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long value, int scale) {
+        return BigDecimal.valueOf(value, scale);
+    }
+
+    public static String toPlainString(long value, int scale) {
+        return BigDecimal.valueOf(value, scale).toPlainString();
+    }
+
+    /**
+     * 调整小数位数
+     */
+    public static long rescale(long value, int fromScale, int toScale) {
+        if (fromScale == toScale) {
+            return value;
+        }
+        if (toScale > fromScale) {
+            return Math.multiplyExact(value, POW10[toScale - fromScale]);
+        }
+        return divide(value, POW10[fromScale - toScale]);
+    }
+
+    /**
+     * a(scale aScale) * b(scale bScale)，结果为 resultScale 位小数
+     */
+    public static long multiply(long a, int aScale, long b, int bScale, int resultScale) {
+        int shift = aScale + bScale - resultScale;
+        if (shift < 0) {
+            return Math.multiplyExact(Math.multiplyExact(a, b), POW10[-shift]);
+        }
+        return mulDiv(a, b, POW10[shift]);
+    }
+
+    /**
+     * a * b / c，中间结果溢出long时退化为BigInteger计算
+     */
+    public static long mulDiv(long a, long b, long c) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return divide(low, c);
+        }
+        return new BigDecimal(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)))
+                .divide(BigDecimal.valueOf(c), 0, RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+    /**
+     * 整数除法，HALF_UP舍入
+     */
+    public static long divide(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder != 0 && Math.abs(remainder) >= Math.abs(divisor) - Math.abs(remainder)) {
+            quotient += ((dividend ^ divisor) < 0) ? -1 : 1;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,80 @@
+package com.uex.trading.common;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 64位趋势递增id（Snowflake）
+ *
+ * 位布局：1位符号(0) | 41位毫秒时间戳（自2024-01-01起） | 10位节点id | 12位序列号
+ * 时间戳和序列号打包在一个AtomicLong里用CAS推进，不加锁、不分配对象。
+ * 同一毫秒内序列号用完或时钟回拨时继续沿用上一个时间戳递增，id始终单调递增。
+ *
+ * 字符串形式为13位定长base36（左侧补0），字典序与数值顺序一致。
+ */
+@Slf4j
+@Component
+public class IdGenerator {
+
+    public static final long EPOCH = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int STRING_LENGTH = 13;
+    private static final char[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    /** 高位为时间戳，低SEQUENCE_BITS位为序列号 */
+    private final AtomicLong state = new AtomicLong();
+    private final long nodeBits;
+
+    public IdGenerator(@Value("${id.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        log.info("Id generator initialized: nodeId={}", nodeId);
+    }
+
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis() - EPOCH;
+            long last = state.get();
+            long next = (last >>> SEQUENCE_BITS) < now ? now << SEQUENCE_BITS : last + 1;
+            if (state.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public String nextIdString() {
+        return toString(nextId());
+    }
+
+    /**
+     * 13位定长base36
+     */
+    public static String toString(long id) {
+        char[] chars = new char[STRING_LENGTH];
+        for (int i = STRING_LENGTH - 1; i >= 0; i--) {
+            chars[i] = DIGITS[(int) (id % 36)];
+            id /= 36;
+        }
+        return new String(chars);
+    }
+
+    public static long parse(String id) {
+        return Long.parseLong(id, 36);
+    }
+
+    /**
+     * id中的生成时间（毫秒时间戳）
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+}
@@ -0,0 +1,90 @@
+package com.uex.trading.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单生产者单消费者有界无锁环形队列
+ *
+ * 只允许一个线程offer/put、一个线程poll。生产者写入元素后以lazySet发布tail，
+ * 消费者取出元素后以lazySet发布head，读写两端不加锁。容量向上取整为2的幂。
+ */
+public final class SpscRingBuffer<E> {
+
+    private final Object[] buffer;
+    private final int mask;
+    private final int capacity;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public SpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+        this.capacity = size;
+    }
+
+    /**
+     * @return 队列满时返回false
+     */
+    public boolean offer(E element) {
+        long t = tail.get();
+        if (t - head.get() >= capacity) {
+            return false;
+        }
+        buffer[(int) t & mask] = element;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * 队列满时自旋等待消费者，起到背压作用
+     */
+    public void put(E element) {
+        int idle = 0;
+        while (!offer(element)) {
+            idle = idle(idle);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long h = head.get();
+        if (h >= tail.get()) {
+            return null;
+        }
+        int index = (int) h & mask;
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 空闲退避：先自旋，再让出CPU，最后短暂park
+     *
+     * @return 下一次调用传入的计数
+     */
+    public static int idle(int count) {
+        if (count < 100) {
+            Thread.onSpinWait();
+        } else if (count < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(50_000L);
+        }
+        return count + 1;
+    }
+}
@@ -0,0 +1,8 @@
+package com.uex.trading.common;
+
+public enum TimeInForce {
+    GTC,        // 一直有效直到撤单
+    IOC,        // 立即成交，剩余部分撤销
+    GTT,        // 有效至expireTime
+    DAY         // 当日有效
+}
@@ -0,0 +1,234 @@
+package com.uex.trading.common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮
+ *
+ * 共levels层，每层2^wheelBits个槽，第0层每槽一个tick，第L层每槽2^(wheelBits*L)个tick。
+ * 定时任务放在与当前tick高位相同的最低一层，到期的槽在驱动线程上整槽取出：
+ * 第0层的槽直接到期，高层的槽在低层走完一圈时下沉到低层。
+ * 添加和取消都是O(1)（槽内双向链表），与挂着的任务数无关；每个tick只处理到期/下沉的槽。
+ *
+ * 同一tick到期的任务一次性交给handler，handler在驱动线程上执行，不应阻塞过久。
+ */
+@Slf4j
+public final class TimingWheel<T> {
+
+    private final long tickMs;
+    private final int wheelBits;
+    private final int mask;
+    private final int levels;
+    private final Bucket<T>[][] wheels;
+    private final Consumer<List<T>> handler;
+    private final Thread driver;
+    private final long startTime;
+    private long currentTick;
+    private volatile boolean running;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(String name, long tickMs, int wheelBits, int levels, Consumer<List<T>> handler) {
+        this.tickMs = tickMs;
+        this.wheelBits = wheelBits;
+        this.mask = (1 << wheelBits) - 1;
+        this.levels = levels;
+        this.handler = handler;
+        this.wheels = new Bucket[levels][1 << wheelBits];
+        for (Bucket<T>[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket<>();
+            }
+        }
+        this.startTime = System.currentTimeMillis();
+        this.driver = new Thread(this::run, name);
+        this.driver.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        driver.start();
+    }
+
+    public void stop() {
+        running = false;
+        driver.interrupt();
+    }
+
+    /**
+     * @param deadline 到期时间（毫秒时间戳），已过期的在下一个tick执行
+     */
+    public Timeout<T> schedule(T task, long deadline) {
+        long tick = Math.max(0, (deadline - startTime + tickMs - 1) / tickMs);
+        Timeout<T> timeout = new Timeout<>(this, task);
+        synchronized (this) {
+            timeout.tick = Math.max(tick, currentTick + 1);
+            if (timeout.tick >>> (wheelBits * levels) != currentTick >>> (wheelBits * levels)) {
+                throw new IllegalArgumentException("Deadline beyond timing wheel range: " + deadline);
+            }
+            place(timeout);
+            size++;
+        }
+        return timeout;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 放到与当前tick高位相同的最低一层，槽位由该层对应的tick位决定
+     */
+    private void place(Timeout<T> timeout) {
+        int level = 0;
+        while (level < levels - 1
+                && timeout.tick >>> (wheelBits * (level + 1)) != currentTick >>> (wheelBits * (level + 1))) {
+            level++;
+        }
+        int index = (int) (timeout.tick >>> (wheelBits * level)) & mask;
+        wheels[level][index].add(timeout);
+    }
+
+    private synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.bucket == null) {
+            return false;
+        }
+        timeout.bucket.remove(timeout);
+        size--;
+        return true;
+    }
+
+    private void run() {
+        List<T> expired = new ArrayList<>();
+        while (running) {
+            long target = (System.currentTimeMillis() - startTime) / tickMs;
+            synchronized (this) {
+                while (currentTick < target) {
+                    advance(expired);
+                }
+            }
+            if (!expired.isEmpty()) {
+                try {
+                    handler.accept(expired);
+                } catch (Exception e) {
+                    log.error("Timing wheel handler failed: tasks={}", expired.size(), e);
+                }
+                expired = new ArrayList<>();
+            }
+
+            long next = startTime + (target + 1) * tickMs - System.currentTimeMillis();
+            if (next > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(next);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 前进一个tick：先从高到低把走到边界的高层槽下沉，再取出第0层当前槽
+     */
+    private void advance(List<T> expired) {
+        currentTick++;
+        int top = 0;
+        while (top < levels - 1 && (currentTick & ((1L << (wheelBits * (top + 1))) - 1)) == 0) {
+            top++;
+        }
+        for (int level = top; level >= 1; level--) {
+            Bucket<T> bucket = wheels[level][(int) (currentTick >>> (wheelBits * level)) & mask];
+            for (Timeout<T> timeout = bucket.clear(); timeout != null; ) {
+                Timeout<T> next = timeout.next;
+                timeout.next = null;
+                place(timeout);
+                timeout = next;
+            }
+        }
+
+        Bucket<T> bucket = wheels[0][(int) currentTick & mask];
+        for (Timeout<T> timeout = bucket.clear(); timeout != null; ) {
+            Timeout<T> next = timeout.next;
+            timeout.next = null;
+            expired.add(timeout.task);
+            size--;
+            timeout = next;
+        }
+    }
+
+    public static final class Timeout<T> {
+        private final TimingWheel<T> wheel;
+        private final T task;
+        private long tick;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(TimingWheel<T> wheel, T task) {
+            this.wheel = wheel;
+            this.task = task;
+        }
+
+        public T task() {
+            return task;
+        }
+
+        /**
+         * @return 已到期或已取消时返回false
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+    }
+
+    /**
+     * 槽：定时任务的双向链表
+     */
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        /**
+         * 取出整条链表，链表中的任务不再属于任何槽
+         */
+        Timeout<T> clear() {
+            Timeout<T> first = head;
+            for (Timeout<T> t = first; t != null; t = t.next) {
+                t.bucket = null;
+                t.prev = null;
+            }
+            head = null;
+            return first;
+        }
+    }
+}
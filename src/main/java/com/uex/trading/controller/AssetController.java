@@ -4,6 +4,7 @@ import com.uex.trading.asset.AssetFlow;
 import com.uex.trading.asset.AssetService;
 import com.uex.trading.asset.Balance;
 import com.uex.trading.common.ApiResponse;
+import com.uex.trading.common.CursorPage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -44,12 +45,15 @@ public class AssetController {
     }
 
     @GetMapping("/flow")
-    public ApiResponse<List<AssetFlow>> getFlowList(
+    public ApiResponse<CursorPage<AssetFlow>> getFlowList(
             @RequestHeader("X-User-Id") String userId,
             @RequestParam(required = false) String asset,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "100") Integer limit) {
         try {
-            List<AssetFlow> flows = assetService.getFlowList(userId, asset, limit);
+            CursorPage<AssetFlow> flows = assetService.getFlowList(userId, asset, from, to, cursor, limit);
             return ApiResponse.success(flows);
         } catch (Exception e) {
             log.error("Failed to get flow list", e);
@@ -1,7 +1,11 @@
 package com.uex.trading.controller;
 
 import com.uex.trading.common.ApiResponse;
+import com.uex.trading.common.CursorPage;
+import com.uex.trading.order.BatchOrderRequest;
+import com.uex.trading.order.BatchOrderResult;
 import com.uex.trading.order.Order;
+import com.uex.trading.order.OrderAmendRequest;
 import com.uex.trading.order.OrderRequest;
 import com.uex.trading.order.OrderService;
 import com.uex.trading.order.Trade;
@@ -33,6 +37,19 @@ public class OrderController {
         }
     }
 
+    @PostMapping("/batch-submit")
+    public ApiResponse<List<BatchOrderResult>> submitOrders(
+            @RequestHeader("X-User-Id") String userId,
+            @Valid @RequestBody BatchOrderRequest request) {
+        try {
+            List<BatchOrderResult> results = orderService.submitOrders(userId, request.getOrders());
+            return ApiResponse.success(results);
+        } catch (Exception e) {
+            log.error("Failed to submit batch orders", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
     @PostMapping("/cancel/{orderId}")
     public ApiResponse<String> cancelOrder(
             @RequestHeader("X-User-Id") String userId,
@@ -46,12 +63,41 @@ public class OrderController {
         }
     }
 
+    @PostMapping("/amend/{orderId}")
+    public ApiResponse<Order> amendOrder(
+            @RequestHeader("X-User-Id") String userId,
+            @PathVariable String orderId,
+            @RequestBody OrderAmendRequest request) {
+        try {
+            Order order = orderService.amendOrder(userId, orderId, request);
+            return ApiResponse.success(order);
+        } catch (Exception e) {
+            log.error("Failed to amend order", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    @PostMapping("/cancel-all")
+    public ApiResponse<List<String>> cancelAllOrders(
+            @RequestHeader("X-User-Id") String userId,
+            @RequestParam(required = false) String symbol) {
+        try {
+            List<String> orderIds = orderService.cancelAllOrders(userId, symbol);
+            return ApiResponse.success(orderIds);
+        } catch (Exception e) {
+            log.error("Failed to cancel all orders", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
     @GetMapping("/list")
     public ApiResponse<List<Order>> getOrderList(
             @RequestHeader("X-User-Id") String userId,
-            @RequestParam(required = false) String symbol) {
+            @RequestParam(required = false) String symbol,
+            @RequestParam(required = false) Boolean open,
+            @RequestParam(defaultValue = "100") Integer limit) {
         try {
-            List<Order> orders = orderService.getOrderList(userId, symbol);
+            List<Order> orders = orderService.getOrderList(userId, symbol, open, limit);
             return ApiResponse.success(orders);
         } catch (Exception e) {
             log.error("Failed to get order list", e);
@@ -60,15 +106,33 @@ public class OrderController {
     }
 
     @GetMapping("/trades/{orderId}")
-    public ApiResponse<List<Trade>> getTradeList(
+    public ApiResponse<CursorPage<Trade>> getTradeList(
             @RequestHeader("X-User-Id") String userId,
-            @PathVariable String orderId) {
+            @PathVariable String orderId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") Integer limit) {
         try {
-            List<Trade> trades = orderService.getTradeList(userId, orderId);
+            CursorPage<Trade> trades = orderService.getTradeList(userId, orderId, cursor, limit);
             return ApiResponse.success(trades);
         } catch (Exception e) {
             log.error("Failed to get trade list", e);
             return ApiResponse.error(e.getMessage());
         }
     }
+
+    @GetMapping("/trades")
+    public ApiResponse<CursorPage<Trade>> getUserTrades(
+            @RequestHeader("X-User-Id") String userId,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") Integer limit) {
+        try {
+            CursorPage<Trade> trades = orderService.getUserTrades(userId, from, to, cursor, limit);
+            return ApiResponse.success(trades);
+        } catch (Exception e) {
+            log.error("Failed to get user trades", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,271 @@
+package com.uex.trading.gateway;
+
+import com.uex.trading.common.OrderSide;
+import com.uex.trading.common.OrderStatus;
+import com.uex.trading.common.OrderType;
+import com.uex.trading.common.TimeInForce;
+import com.uex.trading.order.OrderRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 网关二进制协议编解码（SBE风格，小端序，定长块 + 变长字段）
+ *
+ * 帧仍为4字节大端长度 + 消息体，消息体第一个字节为MAGIC时按二进制解析，否则按JSON解析。
+ * 消息体布局：
+ * <pre>
+ * 头部16字节: u8 magic(0xFE) | u8 version | u16 templateId | u16 blockLength | u16 reserved | i64 timestamp
+ * 定长块:     blockLength字节，字段见各模板；读取方跳过自己不认识的尾部字段，便于加字段升级，小于模板块长度的帧拒绝
+ * 变长字段:   依次为 u16长度 + UTF-8，长度0表示空，最长65535字节
+ *
+ * ORDER_REQUEST(1)   块32字节: u8 side | u8 orderType | u8 timeInForce | i8 priceExponent | i8 qtyExponent | 3字节填充
+ *                              | i64 priceMantissa | i64 qtyMantissa | i64 expireTime
+ *                    变长: msgId, userId, symbol, clientOrderId
+ * ORDER_RESPONSE(2)  块8字节:  i32 code | u8 status | 3字节填充
+ *                    变长: msgId, orderId, clientOrderId, message
+ * CANCEL_REQUEST(3)  块0字节;  变长: msgId, userId, orderId
+ * CANCEL_RESPONSE(4) 块8字节:  i32 code | 4字节填充
+ *                    变长: msgId, orderId, message
+ * </pre>
+ * 价格/数量为mantissa * 10^exponent；mantissa为Long.MIN_VALUE表示空。
+ * 枚举字段为枚举序号，0xFF表示空；expireTime为0表示空。
+ * 解码失败（头部/块长度非法、字段越过帧尾）抛出CorruptedFrameException。
+ */
+public final class BinaryCodec {
+
+    public static final byte MAGIC = (byte) 0xFE;
+    public static final int VERSION = 1;
+
+    public static final int ORDER_REQUEST = 1;
+    public static final int ORDER_RESPONSE = 2;
+    public static final int CANCEL_REQUEST = 3;
+    public static final int CANCEL_RESPONSE = 4;
+
+    private static final int HEADER_LENGTH = 16;
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+    private static final int NULL_ENUM = 0xFF;
+    private static final long NULL_DECIMAL = Long.MIN_VALUE;
+
+    private BinaryCodec() {
+    }
+
+    public static boolean isBinary(ByteBuf in, int index) {
+        return in.getByte(index) == MAGIC;
+    }
+
+    /**
+     * 从in读取length字节的消息体
+     */
+    public static BinaryMessage decode(ByteBuf in, int length) {
+        try {
+            return decodeBody(in.readSlice(length));
+        } catch (IndexOutOfBoundsException e) {
+            throw new CorruptedFrameException("Binary frame truncated: length=" + length, e);
+        }
+    }
+
+    /**
+     * body为恰好一个消息体的切片，越过帧尾的读取抛出IndexOutOfBoundsException
+     */
+    private static BinaryMessage decodeBody(ByteBuf in) {
+        if (in.readableBytes() < HEADER_LENGTH || in.readByte() != MAGIC) {
+            throw new CorruptedFrameException("Invalid binary frame header");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new CorruptedFrameException("Unsupported binary protocol version: " + version);
+        }
+        BinaryMessage msg = new BinaryMessage();
+        msg.setTemplateId(in.readUnsignedShortLE());
+        int blockLength = in.readUnsignedShortLE();
+        in.skipBytes(2);
+        msg.setTimestamp(in.readLongLE());
+        if (blockLength < minBlockLength(msg.getTemplateId())) {
+            throw new CorruptedFrameException("Binary block too short: template=" + msg.getTemplateId()
+                    + ", blockLength=" + blockLength);
+        }
+        if (blockLength > in.readableBytes()) {
+            throw new CorruptedFrameException("Binary block exceeds frame: " + blockLength);
+        }
+        int blockEnd = in.readerIndex() + blockLength;
+
+        switch (msg.getTemplateId()) {
+            case ORDER_REQUEST: {
+                OrderRequest order = new OrderRequest();
+                order.setSide(enumOf(OrderSide.values(), in.readUnsignedByte()));
+                order.setOrderType(enumOf(OrderType.values(), in.readUnsignedByte()));
+                order.setTimeInForce(enumOf(TimeInForce.values(), in.readUnsignedByte()));
+                byte priceExponent = in.readByte();
+                byte qtyExponent = in.readByte();
+                in.skipBytes(3);
+                order.setPrice(decimal(in.readLongLE(), priceExponent));
+                order.setQuantity(decimal(in.readLongLE(), qtyExponent));
+                long expireTime = in.readLongLE();
+                order.setExpireTime(expireTime != 0 ? expireTime : null);
+                in.readerIndex(blockEnd);
+                msg.setMsgId(readString(in));
+                msg.setUserId(readString(in));
+                order.setSymbol(readString(in));
+                order.setClientOrderId(readString(in));
+                msg.setOrder(order);
+                break;
+            }
+            case ORDER_RESPONSE:
+                msg.setCode(in.readIntLE());
+                msg.setStatus(enumOf(OrderStatus.values(), in.readUnsignedByte()));
+                in.readerIndex(blockEnd);
+                msg.setMsgId(readString(in));
+                msg.setOrderId(readString(in));
+                msg.setClientOrderId(readString(in));
+                msg.setMessage(readString(in));
+                break;
+            case CANCEL_REQUEST:
+                in.readerIndex(blockEnd);
+                msg.setMsgId(readString(in));
+                msg.setUserId(readString(in));
+                msg.setOrderId(readString(in));
+                break;
+            case CANCEL_RESPONSE:
+                msg.setCode(in.readIntLE());
+                in.readerIndex(blockEnd);
+                msg.setMsgId(readString(in));
+                msg.setOrderId(readString(in));
+                msg.setMessage(readString(in));
+                break;
+            default:
+                throw new CorruptedFrameException("Unknown binary template: " + msg.getTemplateId());
+        }
+        return msg;
+    }
+
+    /**
+     * 各模板当前版本的定长块长度
+     */
+    private static int minBlockLength(int templateId) {
+        switch (templateId) {
+            case ORDER_REQUEST:
+                return 32;
+            case ORDER_RESPONSE:
+            case CANCEL_RESPONSE:
+                return 8;
+            case CANCEL_REQUEST:
+                return 0;
+            default:
+                throw new CorruptedFrameException("Unknown binary template: " + templateId);
+        }
+    }
+
+    /**
+     * 写入消息体（不含4字节帧长度）
+     */
+    public static void encode(BinaryMessage msg, ByteBuf out) {
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShortLE(msg.getTemplateId());
+        int blockLengthIndex = out.writerIndex();
+        out.writeShortLE(0);
+        out.writeShortLE(0);
+        out.writeLongLE(msg.getTimestamp());
+        int blockStart = out.writerIndex();
+
+        switch (msg.getTemplateId()) {
+            case ORDER_REQUEST: {
+                OrderRequest order = msg.getOrder();
+                out.writeByte(ordinal(order.getSide()));
+                out.writeByte(ordinal(order.getOrderType()));
+                out.writeByte(ordinal(order.getTimeInForce()));
+                out.writeByte(exponent(order.getPrice()));
+                out.writeByte(exponent(order.getQuantity()));
+                out.writeZero(3);
+                out.writeLongLE(mantissa(order.getPrice()));
+                out.writeLongLE(mantissa(order.getQuantity()));
+                out.writeLongLE(order.getExpireTime() != null ? order.getExpireTime() : 0L);
+                out.setShortLE(blockLengthIndex, out.writerIndex() - blockStart);
+                writeString(out, msg.getMsgId());
+                writeString(out, msg.getUserId());
+                writeString(out, order.getSymbol());
+                writeString(out, order.getClientOrderId());
+                break;
+            }
+            case ORDER_RESPONSE:
+                out.writeIntLE(msg.getCode());
+                out.writeByte(ordinal(msg.getStatus()));
+                out.writeZero(3);
+                out.setShortLE(blockLengthIndex, out.writerIndex() - blockStart);
+                writeString(out, msg.getMsgId());
+                writeString(out, msg.getOrderId());
+                writeString(out, msg.getClientOrderId());
+                writeString(out, msg.getMessage());
+                break;
+            case CANCEL_REQUEST:
+                writeString(out, msg.getMsgId());
+                writeString(out, msg.getUserId());
+                writeString(out, msg.getOrderId());
+                break;
+            case CANCEL_RESPONSE:
+                out.writeIntLE(msg.getCode());
+                out.writeZero(4);
+                out.setShortLE(blockLengthIndex, out.writerIndex() - blockStart);
+                writeString(out, msg.getMsgId());
+                writeString(out, msg.getOrderId());
+                writeString(out, msg.getMessage());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown binary template: " + msg.getTemplateId());
+        }
+    }
+
+    private static <E extends Enum<E>> E enumOf(E[] values, int ordinal) {
+        if (ordinal == NULL_ENUM) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new CorruptedFrameException("Invalid enum value: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static int ordinal(Enum<?> value) {
+        return value != null ? value.ordinal() : NULL_ENUM;
+    }
+
+    private static BigDecimal decimal(long mantissa, byte exponent) {
+        return mantissa == NULL_DECIMAL ? null : new BigDecimal(BigInteger.valueOf(mantissa), -exponent);
+    }
+
+    private static long mantissa(BigDecimal value) {
+        return value != null ? value.unscaledValue().longValueExact() : NULL_DECIMAL;
+    }
+
+    private static int exponent(BigDecimal value) {
+        return value != null ? -value.scale() : 0;
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = in.readUnsignedShortLE();
+        if (length == 0) {
+            return null;
+        }
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        if (value == null || value.isEmpty()) {
+            out.writeShortLE(0);
+            return;
+        }
+        int length = ByteBufUtil.utf8Bytes(value);
+        if (length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Binary string field too long: " + length + " bytes");
+        }
+        out.writeShortLE(length);
+        out.writeCharSequence(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,22 @@
+package com.uex.trading.gateway;
+
+import com.uex.trading.common.OrderStatus;
+import com.uex.trading.order.OrderRequest;
+import lombok.Data;
+
+/**
+ * 二进制协议消息，按templateId使用不同字段，编解码见 {@link BinaryCodec}
+ */
+@Data
+public class BinaryMessage {
+    private int templateId;         // 消息模板: ORDER_REQUEST, ORDER_RESPONSE, CANCEL_REQUEST, CANCEL_RESPONSE
+    private String msgId;           // 消息ID
+    private long timestamp;         // 时间戳
+    private String userId;          // 用户ID（请求）
+    private String orderId;         // 订单ID（撤单请求、响应）
+    private String clientOrderId;   // 客户端订单ID（下单响应）
+    private OrderRequest order;     // 下单请求
+    private OrderStatus status;     // 订单状态（下单响应）
+    private int code;               // 0成功，9999失败（响应）
+    private String message;         // 响应说明
+}
@@ -0,0 +1,125 @@
+package com.uex.trading.gateway;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.Future;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并flush：上层仍调用writeAndFlush，由本handler决定何时真正flush（一次flush对应一次写系统调用）
+ *
+ * - 读批次进行中：只写不flush，channelReadComplete时统一flush
+ * - 读批次之外（业务线程写回的响应）：在event loop上延迟maxDelayMicros后flush，0表示排到event loop当前已排队的任务之后，
+ *   期间到达的响应一起flush
+ * - 未flush的消息达到maxMessages时立即flush
+ * 连接关闭、断开、出错或写缓冲区变为不可写时先flush已写的消息。
+ *
+ * 每次flush的消息数记在gateway.flush.messages中。放在pipeline最前面（离socket最近），每个连接一个实例。
+ */
+public class GatewayFlushHandler extends ChannelDuplexHandler {
+
+    private final int maxMessages;
+    private final long maxDelayMicros;
+    private final DistributionSummary messagesPerFlush;
+
+    private boolean readInProgress;
+    private int pending;
+    private Future<?> scheduledFlush;
+    private Runnable flushTask;
+
+    public GatewayFlushHandler(int maxMessages, long maxDelayMicros, DistributionSummary messagesPerFlush) {
+        this.maxMessages = maxMessages;
+        this.maxDelayMicros = maxDelayMicros;
+        this.messagesPerFlush = messagesPerFlush;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        flushTask = () -> {
+            scheduledFlush = null;
+            if (pending > 0 && !readInProgress) {
+                flushNow(ctx);
+            }
+        };
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        pending++;
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (pending >= maxMessages) {
+            flushNow(ctx);
+        } else if (!readInProgress && scheduledFlush == null) {
+            scheduledFlush = maxDelayMicros > 0
+                    ? ctx.executor().schedule(flushTask, maxDelayMicros, TimeUnit.MICROSECONDS)
+                    : ctx.executor().submit(flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        readInProgress = false;
+        flushIfPending(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable()) {
+            flushIfPending(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        flushIfPending(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        flushIfPending(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        flushIfPending(ctx);
+    }
+
+    private void flushIfPending(ChannelHandlerContext ctx) {
+        if (pending > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        messagesPerFlush.record(pending);
+        pending = 0;
+        ctx.flush();
+    }
+}
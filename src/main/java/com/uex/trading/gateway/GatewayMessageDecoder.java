@@ -1,40 +1,76 @@
 package com.uex.trading.gateway;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.io.InputStream;
 
+/**
+ * 帧解码：4字节长度 + 消息体，消息体首字节为 {@link BinaryCodec#MAGIC} 时解为 {@link BinaryMessage}，否则按JSON解为 {@link GatewayMessage}
+ *
+ * 不做按连接的协议协商：二进制只覆盖下单/撤单，批量、改单、全撤仍是JSON，所以每帧单独判断格式，同一连接上两种格式可以混用，响应按请求的格式返回。
+ * 帧是接收缓冲区上的切片，直接从切片解析，不复制成byte[]/String；超过maxFrameLength的帧丢弃并抛出TooLongFrameException，连接保持。
+ * 消息体损坏（二进制越界/非法头部、JSON语法错误）只丢弃该帧，不断开连接，避免触发断线撤单。
+ */
 @Slf4j
-public class GatewayMessageDecoder extends ByteToMessageDecoder {
+public class GatewayMessageDecoder extends LengthFieldBasedFrameDecoder {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 1024 * 1024;
 
-    @Override
-    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        if (in.readableBytes() < 4) {
-            return;
-        }
+    static final ObjectReader READER = new ObjectMapper().readerFor(GatewayMessage.class);
 
-        in.markReaderIndex();
-        int length = in.readInt();
+    public GatewayMessageDecoder() {
+        this(DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    public GatewayMessageDecoder(int maxFrameLength) {
+        super(maxFrameLength, 0, 4, 0, 4);
+    }
 
-        if (in.readableBytes() < length) {
-            in.resetReaderIndex();
-            return;
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+        if (frame == null) {
+            return null;
         }
 
-        byte[] bytes = new byte[length];
-        in.readBytes(bytes);
+        int length = frame.readableBytes();
+        boolean binary = length > 0 && BinaryCodec.isBinary(frame, frame.readerIndex());
+        try {
+            if (binary) {
+                BinaryMessage message = BinaryCodec.decode(frame, length);
+                log.debug("Decoded binary message: template={}, msgId={}", message.getTemplateId(), message.getMsgId());
+                return message;
+            }
 
-        String json = new String(bytes, StandardCharsets.UTF_8);
-        GatewayMessage message = objectMapper.readValue(json, GatewayMessage.class);
+            GatewayMessage message;
+            try (InputStream input = new ByteBufInputStream(frame)) {
+                message = READER.readValue(input);
+            }
+            log.debug("Decoded message: msgType={}, msgId={}", message.getMsgType(), message.getMsgId());
+            return message;
+        } catch (CorruptedFrameException | JsonProcessingException e) {
+            // 帧边界由长度前缀确定，丢弃这一帧后后续帧仍然对齐
+            log.warn("Malformed gateway frame discarded: remote={}, binary={}, length={}, {}",
+                    ctx.channel().remoteAddress(), binary, length, e.getMessage());
+            return null;
+        } finally {
+            frame.release();
+        }
+    }
 
-        out.add(message);
-        log.debug("Decoded message: {}", json);
+    /**
+     * 帧本身就是in的切片（retainedSlice），不复制
+     */
+    @Override
+    protected ByteBuf extractFrame(ChannelHandlerContext ctx, ByteBuf buffer, int index, int length) {
+        return buffer.retainedSlice(index, length);
     }
 }
@@ -1,27 +1,48 @@
 package com.uex.trading.gateway;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 
+/**
+ * 帧编码：{@link GatewayMessage} 编为JSON，{@link BinaryMessage} 编为二进制，前面加4字节长度
+ *
+ * out由ctx.alloc()分配（默认池化direct buffer），消息体直接写进out，先占位长度再回填，不经过中间byte[]/String。
+ */
 @Slf4j
-public class GatewayMessageEncoder extends MessageToByteEncoder<GatewayMessage> {
+public class GatewayMessageEncoder extends MessageToByteEncoder<Object> {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    static final ObjectWriter WRITER = new ObjectMapper()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .writerFor(GatewayMessage.class);
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, GatewayMessage msg, ByteBuf out) throws Exception {
-        String json = objectMapper.writeValueAsString(msg);
-        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof GatewayMessage || msg instanceof BinaryMessage;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
 
-        // 协议: 4字节长度 + JSON数据
-        out.writeInt(bytes.length);
-        out.writeBytes(bytes);
+        if (msg instanceof BinaryMessage binary) {
+            BinaryCodec.encode(binary, out);
+            log.debug("Encoded binary message: template={}, msgId={}", binary.getTemplateId(), binary.getMsgId());
+        } else {
+            GatewayMessage message = (GatewayMessage) msg;
+            WRITER.writeValue((OutputStream) new ByteBufOutputStream(out), message);
+            log.debug("Encoded message: msgType={}, msgId={}", message.getMsgType(), message.getMsgId());
+        }
 
-        log.debug("Encoded message: {}", json);
+        // 协议: 4字节长度 + 消息体
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
     }
 }
@@ -0,0 +1,147 @@
+package com.uex.trading.gateway;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关请求的业务线程池，按userId分区
+ *
+ * 下单/撤单会多次访问Redis，不能在Netty I/O线程上执行，否则一个慢请求会卡住同一event loop上的所有连接。
+ * 每个分区一个线程 + 有界队列，同一用户的请求始终进入同一分区按到达顺序执行；队列满时拒绝，由调用方回错误响应。
+ * 断连撤单等控制任务不能被拒绝，交给控制线程阻塞放入分区队列，调用方（I/O线程）不阻塞也不执行任务。
+ *
+ * 指标：gateway.executor.queue.depth{partition} 各分区队列长度
+ */
+@Slf4j
+@Component
+public class GatewayRequestExecutor {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gateway.executor.partitions:8}")
+    private int partitionCount;
+
+    @Value("${gateway.executor.queue-size:4096}")
+    private int queueSize;
+
+    private final List<ThreadPoolExecutor> partitions = new ArrayList<>();
+    private ExecutorService controlExecutor;
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < partitionCount; i++) {
+            String name = "gateway-worker-" + i;
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), r -> {
+                        Thread thread = new Thread(r, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // 控制任务直接放入队列，不经过execute，分区线程需要先启动
+            executor.prestartAllCoreThreads();
+            partitions.add(executor);
+            Gauge.builder("gateway.executor.queue.depth", executor, e -> e.getQueue().size())
+                    .tag("partition", String.valueOf(i)).register(meterRegistry);
+        }
+        controlExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "gateway-control");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Gateway request executor started: partitions={}, queueSize={}", partitionCount, queueSize);
+    }
+
+    /**
+     * 提交到userId所在分区
+     *
+     * @throws RejectedExecutionException 分区队列已满或已关闭
+     */
+    public void execute(String userId, Runnable task) {
+        partitions.get(partitionOf(userId)).execute(wrap(userId, task));
+    }
+
+    /**
+     * 控制任务：不因队列满被拒绝，排在userId所在分区已排队的请求之后执行；分区已关闭时在控制线程上直接执行
+     *
+     * @throws RejectedExecutionException 执行器已关闭
+     */
+    public void executeControl(String userId, Runnable task) {
+        Runnable wrapped = wrap(userId, task);
+        controlExecutor.execute(() -> {
+            ThreadPoolExecutor partition = partitions.get(partitionOf(userId));
+            if (!partition.isShutdown()) {
+                try {
+                    partition.getQueue().put(wrapped);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while queuing control task, running on control thread: userId={}", userId);
+                    wrapped.run();
+                    return;
+                }
+                // 放入前分区恰好已停止时队列不会再被取走
+                if (!partition.isTerminated() || !partition.getQueue().remove(wrapped)) {
+                    return;
+                }
+            }
+            wrapped.run();
+        });
+    }
+
+    private Runnable wrap(String userId, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Gateway request task failed: userId={}", userId, e);
+            }
+        };
+    }
+
+    private int partitionOf(String userId) {
+        return userId == null ? 0 : (userId.hashCode() & 0x7fffffff) % partitionCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down gateway request executor, draining queues");
+        // 先让控制线程把已提交的控制任务放入分区队列
+        if (controlExecutor != null) {
+            controlExecutor.shutdown();
+            try {
+                if (!controlExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("Gateway control executor did not drain in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (ThreadPoolExecutor executor : partitions) {
+            executor.shutdown();
+        }
+        for (ThreadPoolExecutor executor : partitions) {
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("Gateway request executor did not drain in time: pending={}", executor.getQueue().size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,38 +1,119 @@
 package com.uex.trading.gateway;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.uex.trading.order.BatchOrderRequest;
+import com.uex.trading.order.BatchOrderResult;
 import com.uex.trading.order.Order;
+import com.uex.trading.order.OrderAmendRequest;
 import com.uex.trading.order.OrderRequest;
 import com.uex.trading.order.OrderService;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.AttributeKey;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * 网关连接的请求处理，所有连接共用一个实例，连接相关的状态放在channel属性中
+ */
 @Slf4j
 @Component
-public class GatewayServerHandler extends SimpleChannelInboundHandler<GatewayMessage> {
+@ChannelHandler.Sharable
+public class GatewayServerHandler extends SimpleChannelInboundHandler<Object> {
+
+    /**
+     * 在该连接上下过单的用户，cancel-on-disconnect时逐个撤单
+     */
+    private static final AttributeKey<Set<String>> SESSION_USERS = AttributeKey.valueOf("sessionUsers");
 
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private GatewayRequestExecutor requestExecutor;
+
+    @Value("${gateway.tcp.cancel-on-disconnect:false}")
+    private boolean cancelOnDisconnect;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * I/O线程上只解析出userId，业务处理交给 {@link GatewayRequestExecutor} 中该用户的分区执行，响应写回原连接
+     */
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, GatewayMessage msg) {
+    protected void channelRead0(ChannelHandlerContext ctx, Object frame) {
+        if (frame instanceof BinaryMessage binary) {
+            log.info("Received binary from gateway: template={}, msgId={}", binary.getTemplateId(), binary.getMsgId());
+            String userId = binary.getUserId() != null ? binary.getUserId() : "gateway_user";
+            if (binary.getTemplateId() == BinaryCodec.ORDER_REQUEST) {
+                trackSessionUser(ctx, userId);
+            }
+            try {
+                requestExecutor.execute(userId, () -> handleBinary(ctx, binary, userId));
+            } catch (RejectedExecutionException e) {
+                log.warn("Gateway busy, binary request rejected: userId={}, msgId={}", userId, binary.getMsgId());
+                sendBinaryErrorResponse(ctx, binary, "Gateway busy");
+            }
+            return;
+        }
+        GatewayMessage msg = (GatewayMessage) frame;
         log.info("Received from gateway: type={}, msgId={}", msg.getMsgType(), msg.getMsgId());
 
+        String userId;
+        ObjectNode data;
+        try {
+            // userId由网关放在data中，未传时使用默认用户
+            data = (ObjectNode) objectMapper.readTree(msg.getData());
+            JsonNode userIdNode = data.remove("userId");
+            userId = userIdNode != null && !userIdNode.isNull() ? userIdNode.asText() : "gateway_user";
+        } catch (Exception e) {
+            log.error("Failed to parse gateway message", e);
+            sendErrorResponse(ctx, msg, e.getMessage());
+            return;
+        }
+        if ("ORDER_REQUEST".equals(msg.getMsgType()) || "BATCH_ORDER_REQUEST".equals(msg.getMsgType())) {
+            trackSessionUser(ctx, userId);
+        }
+
+        try {
+            requestExecutor.execute(userId, () -> handleRequest(ctx, msg, userId, data));
+        } catch (RejectedExecutionException e) {
+            log.warn("Gateway busy, request rejected: userId={}, msgId={}", userId, msg.getMsgId());
+            sendErrorResponse(ctx, msg, "Gateway busy");
+        }
+    }
+
+    private void handleRequest(ChannelHandlerContext ctx, GatewayMessage msg, String userId, ObjectNode data) {
         try {
             switch (msg.getMsgType()) {
                 case "ORDER_REQUEST":
-                    handleOrderRequest(ctx, msg);
+                    handleOrderRequest(ctx, msg, userId, data);
+                    break;
+                case "BATCH_ORDER_REQUEST":
+                    handleBatchOrderRequest(ctx, msg, userId, data);
+                    break;
+                case "AMEND_REQUEST":
+                    handleAmendRequest(ctx, msg, userId, data);
                     break;
                 case "CANCEL_REQUEST":
-                    handleCancelRequest(ctx, msg);
+                    handleCancelRequest(ctx, msg, userId, data);
+                    break;
+                case "CANCEL_ALL_REQUEST":
+                    handleCancelAllRequest(ctx, msg, userId, data);
                     break;
                 default:
                     log.warn("Unknown message type: {}", msg.getMsgType());
@@ -43,14 +124,49 @@ public class GatewayServerHandler extends SimpleChannelInboundHandler<GatewayMes
         }
     }
 
-    private void handleOrderRequest(ChannelHandlerContext ctx, GatewayMessage msg) {
+    /**
+     * 二进制协议的下单/撤单，字段已由解码器直接解析，不经过JSON
+     */
+    private void handleBinary(ChannelHandlerContext ctx, BinaryMessage msg, String userId) {
+        BinaryMessage response = new BinaryMessage();
+        response.setMsgId(msg.getMsgId());
         try {
-            // 解析OrderRequest
-            OrderRequest request = objectMapper.readValue(msg.getData(), OrderRequest.class);
+            switch (msg.getTemplateId()) {
+                case BinaryCodec.ORDER_REQUEST: {
+                    response.setTemplateId(BinaryCodec.ORDER_RESPONSE);
+                    response.setClientOrderId(msg.getOrder().getClientOrderId());
+                    Order order = orderService.submitOrder(userId, msg.getOrder());
+                    response.setOrderId(order.getOrderId());
+                    response.setClientOrderId(order.getClientOrderId());
+                    response.setStatus(order.getStatus());
+                    response.setMessage("Order submitted successfully");
+                    break;
+                }
+                case BinaryCodec.CANCEL_REQUEST:
+                    response.setTemplateId(BinaryCodec.CANCEL_RESPONSE);
+                    response.setOrderId(msg.getOrderId());
+                    orderService.cancelOrder(userId, msg.getOrderId());
+                    response.setMessage("Cancel request submitted");
+                    break;
+                default:
+                    log.warn("Unsupported binary template: {}", msg.getTemplateId());
+                    return;
+            }
+        } catch (Exception e) {
+            log.error("Failed to process binary gateway message", e);
+            response.setCode(9999);
+            response.setMessage(e.getMessage());
+        }
 
-            // 从消息中获取userId（假设网关会传递，或者从连接上下文获取）
-            // 这里暂时硬编码，实际应该从网关传来的消息中获取
-            String userId = "gateway_user"; // TODO: 从网关消息中获取真实userId
+        response.setTimestamp(System.currentTimeMillis());
+        ctx.writeAndFlush(response);
+        log.info("Sent binary response: template={}, orderId={}", response.getTemplateId(), response.getOrderId());
+    }
+
+    private void handleOrderRequest(ChannelHandlerContext ctx, GatewayMessage msg, String userId, ObjectNode data) {
+        try {
+            // 解析OrderRequest
+            OrderRequest request = objectMapper.treeToValue(data, OrderRequest.class);
 
             log.info("Processing order request: symbol={}, side={}, quantity={}",
                     request.getSymbol(), request.getSide(), request.getQuantity());
@@ -66,6 +182,7 @@ public class GatewayServerHandler extends SimpleChannelInboundHandler<GatewayMes
 
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("orderId", order.getOrderId());
+            responseData.put("clientOrderId", order.getClientOrderId());
             responseData.put("status", order.getStatus());
             responseData.put("code", 0);
             responseData.put("message", "Order submitted successfully");
@@ -82,12 +199,81 @@ public class GatewayServerHandler extends SimpleChannelInboundHandler<GatewayMes
         }
     }
 
-    private void handleCancelRequest(ChannelHandlerContext ctx, GatewayMessage msg) {
+    private void handleBatchOrderRequest(ChannelHandlerContext ctx, GatewayMessage msg, String userId, ObjectNode data) {
+        try {
+            // 解析批量下单请求：{"userId": "...", "orders": [OrderRequest...]}
+            BatchOrderRequest request = objectMapper.treeToValue(data, BatchOrderRequest.class);
+
+            log.info("Processing batch order request: userId={}, orders={}",
+                    userId, request.getOrders() != null ? request.getOrders().size() : 0);
+
+            List<BatchOrderResult> results = orderService.submitOrders(userId, request.getOrders());
+
+            // 构造响应，每笔订单的结果按请求顺序返回
+            GatewayMessage response = new GatewayMessage();
+            response.setMsgType("BATCH_ORDER_RESPONSE");
+            response.setMsgId(msg.getMsgId());
+            response.setTimestamp(System.currentTimeMillis());
+
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("results", results);
+            responseData.put("code", 0);
+            responseData.put("message", "Batch orders processed");
+
+            response.setData(objectMapper.writeValueAsString(responseData));
+
+            // 发送响应
+            ctx.writeAndFlush(response);
+            log.info("Sent BATCH_ORDER_RESPONSE: userId={}, orders={}", userId, results.size());
+
+        } catch (Exception e) {
+            log.error("Failed to handle batch order request", e);
+            sendErrorResponse(ctx, msg, e.getMessage());
+        }
+    }
+
+    private void handleAmendRequest(ChannelHandlerContext ctx, GatewayMessage msg, String userId, ObjectNode data) {
+        try {
+            // 解析改单请求：{"userId": "...", "orderId": "...", "price": "...", "quantity": "..."}
+            JsonNode orderIdNode = data.remove("orderId");
+            String orderId = orderIdNode != null ? orderIdNode.asText() : null;
+            OrderAmendRequest request = objectMapper.treeToValue(data, OrderAmendRequest.class);
+
+            log.info("Processing amend request: orderId={}, price={}, quantity={}",
+                    orderId, request.getPrice(), request.getQuantity());
+
+            Order order = orderService.amendOrder(userId, orderId, request);
+
+            // 构造响应
+            GatewayMessage response = new GatewayMessage();
+            response.setMsgType("AMEND_RESPONSE");
+            response.setMsgId(msg.getMsgId());
+            response.setTimestamp(System.currentTimeMillis());
+
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("orderId", order.getOrderId());
+            responseData.put("price", order.getPrice());
+            responseData.put("quantity", order.getQuantity());
+            responseData.put("status", order.getStatus());
+            responseData.put("code", 0);
+            responseData.put("message", "Order amended");
+
+            response.setData(objectMapper.writeValueAsString(responseData));
+
+            // 发送响应
+            ctx.writeAndFlush(response);
+            log.info("Sent AMEND_RESPONSE: orderId={}", order.getOrderId());
+
+        } catch (Exception e) {
+            log.error("Failed to handle amend request", e);
+            sendErrorResponse(ctx, msg, e.getMessage());
+        }
+    }
+
+    private void handleCancelRequest(ChannelHandlerContext ctx, GatewayMessage msg, String userId, ObjectNode data) {
         try {
             // 解析撤单请求
-            Map<String, String> cancelData = objectMapper.readValue(msg.getData(), Map.class);
-            String orderId = cancelData.get("orderId");
-            String userId = cancelData.getOrDefault("userId", "gateway_user"); // TODO: 获取真实userId
+            String orderId = data.path("orderId").asText(null);
 
             log.info("Processing cancel request: orderId={}", orderId);
 
@@ -118,6 +304,57 @@ public class GatewayServerHandler extends SimpleChannelInboundHandler<GatewayMes
         }
     }
 
+    private void handleCancelAllRequest(ChannelHandlerContext ctx, GatewayMessage msg, String userId, ObjectNode data) {
+        try {
+            // 解析批量撤单请求，symbol为空时撤销该用户全部交易对的订单
+            String symbol = data.path("symbol").asText(null);
+
+            log.info("Processing cancel all request: userId={}, symbol={}", userId, symbol);
+
+            List<String> orderIds = orderService.cancelAllOrders(userId, symbol);
+
+            // 构造响应
+            GatewayMessage response = new GatewayMessage();
+            response.setMsgType("CANCEL_ALL_RESPONSE");
+            response.setMsgId(msg.getMsgId());
+            response.setTimestamp(System.currentTimeMillis());
+
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("orderIds", orderIds);
+            responseData.put("count", orderIds.size());
+            responseData.put("code", 0);
+            responseData.put("message", "Cancel all request submitted");
+
+            response.setData(objectMapper.writeValueAsString(responseData));
+
+            // 发送响应
+            ctx.writeAndFlush(response);
+            log.info("Sent CANCEL_ALL_RESPONSE: userId={}, count={}", userId, orderIds.size());
+
+        } catch (Exception e) {
+            log.error("Failed to handle cancel all request", e);
+            sendErrorResponse(ctx, msg, e.getMessage());
+        }
+    }
+
+    /**
+     * 在I/O线程上、分发之前记录，断开时的撤单与该用户的下单请求在同一分区，排在其后执行
+     */
+    private void trackSessionUser(ChannelHandlerContext ctx, String userId) {
+        if (!cancelOnDisconnect) {
+            return;
+        }
+        Set<String> users = ctx.channel().attr(SESSION_USERS).get();
+        if (users == null) {
+            users = ConcurrentHashMap.newKeySet();
+            Set<String> existing = ctx.channel().attr(SESSION_USERS).setIfAbsent(users);
+            if (existing != null) {
+                users = existing;
+            }
+        }
+        users.add(userId);
+    }
+
     private void sendErrorResponse(ChannelHandlerContext ctx, GatewayMessage originalMsg, String errorMessage) {
         try {
             GatewayMessage response = new GatewayMessage();
@@ -136,6 +373,21 @@ public class GatewayServerHandler extends SimpleChannelInboundHandler<GatewayMes
         }
     }
 
+    private void sendBinaryErrorResponse(ChannelHandlerContext ctx, BinaryMessage originalMsg, String errorMessage) {
+        BinaryMessage response = new BinaryMessage();
+        response.setTemplateId(originalMsg.getTemplateId() == BinaryCodec.CANCEL_REQUEST
+                ? BinaryCodec.CANCEL_RESPONSE : BinaryCodec.ORDER_RESPONSE);
+        response.setMsgId(originalMsg.getMsgId());
+        response.setOrderId(originalMsg.getOrderId());
+        if (originalMsg.getOrder() != null) {
+            response.setClientOrderId(originalMsg.getOrder().getClientOrderId());
+        }
+        response.setCode(9999);
+        response.setMessage(errorMessage);
+        response.setTimestamp(System.currentTimeMillis());
+        ctx.writeAndFlush(response);
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         log.info("Gateway connected: {}", ctx.channel().remoteAddress());
@@ -144,10 +396,47 @@ public class GatewayServerHandler extends SimpleChannelInboundHandler<GatewayMes
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         log.warn("Gateway disconnected: {}", ctx.channel().remoteAddress());
+
+        // cancel-on-disconnect：撤销该连接上下过单的用户的全部未完结订单
+        Set<String> users = ctx.channel().attr(SESSION_USERS).getAndSet(null);
+        if (users == null) {
+            return;
+        }
+        // 放到用户所在分区，排在该用户已收到的请求之后执行；队列满时不拒绝，也不在I/O线程上执行
+        for (String userId : users) {
+            try {
+                requestExecutor.executeControl(userId, () -> cancelOnDisconnect(userId));
+            } catch (RejectedExecutionException e) {
+                log.error("Gateway executor shut down, orders not canceled on disconnect: userId={}", userId);
+            }
+        }
     }
 
+    private void cancelOnDisconnect(String userId) {
+        try {
+            List<String> orderIds = orderService.cancelAllOrders(userId, null);
+            log.warn("Canceled orders on gateway disconnect: userId={}, count={}", userId, orderIds.size());
+        } catch (Exception e) {
+            log.error("Failed to cancel orders on gateway disconnect: userId={}", userId, e);
+        }
+    }
+
+    /**
+     * 超长帧已由解码器丢弃，后续帧边界不受影响，只记日志不断开（断开会触发cancel-on-disconnect）
+     */
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (cause instanceof TooLongFrameException) {
+            log.warn("Oversized gateway frame discarded: remote={}, {}", ctx.channel().remoteAddress(),
+                    cause.getMessage());
+            return;
+        }
+        if (cause instanceof DecoderException) {
+            // 单帧解码失败不断开连接，断开会触发断线撤单
+            log.warn("Undecodable gateway frame discarded: remote={}, {}", ctx.channel().remoteAddress(),
+                    cause.getMessage());
+            return;
+        }
         log.error("Handler exception", cause);
         ctx.close();
     }
@@ -30,6 +30,9 @@ public class GatewayTcpClient {
     @Value("${gateway.tcp.connect-timeout}")
     private int connectTimeout;
 
+    @Value("${gateway.tcp.max-frame-length:1048576}")
+    private int maxFrameLength;
+
     @Autowired
     private GatewayMessageHandler messageHandler;
 
@@ -51,7 +54,7 @@ public class GatewayTcpClient {
                     @Override
                     protected void initChannel(SocketChannel ch) {
                         ChannelPipeline pipeline = ch.pipeline();
-                        pipeline.addLast(new GatewayMessageDecoder());
+                        pipeline.addLast(new GatewayMessageDecoder(maxFrameLength));
                         pipeline.addLast(new GatewayMessageEncoder());
                         pipeline.addLast(messageHandler);
                         pipeline.addLast(new ReconnectHandler());
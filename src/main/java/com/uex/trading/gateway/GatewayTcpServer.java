@@ -1,10 +1,20 @@
 package com.uex.trading.gateway;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +22,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 网关TCP服务端
+ *
+ * transport=auto时Linux上使用epoll，不可用时回退NIO。epoll下开启reuse-port可在同一端口绑定多个acceptor，
+ * 由内核按连接分散到各acceptor（每个acceptor占一个boss线程）。
+ * 启动时同步绑定端口，绑定失败直接抛出，不再由单独线程阻塞等待关闭。
+ */
 @Slf4j
 @Component
 public class GatewayTcpServer {
@@ -19,56 +39,150 @@ public class GatewayTcpServer {
     @Value("${gateway.tcp.port:9900}")
     private int port;
 
+    @Value("${gateway.tcp.max-frame-length:1048576}")
+    private int maxFrameLength;
+
+    @Value("${gateway.tcp.transport:auto}")
+    private String transport;
+
+    @Value("${gateway.tcp.boss-threads:1}")
+    private int bossThreads;
+
+    @Value("${gateway.tcp.worker-threads:0}")
+    private int workerThreads;
+
+    @Value("${gateway.tcp.reuse-port:false}")
+    private boolean reusePort;
+
+    @Value("${gateway.tcp.backlog:1024}")
+    private int backlog;
+
+    @Value("${gateway.tcp.rcvbuf:0}")
+    private int receiveBufferSize;
+
+    @Value("${gateway.tcp.sndbuf:0}")
+    private int sendBufferSize;
+
+    @Value("${gateway.tcp.allocator:pooled}")
+    private String allocatorType;
+
+    @Value("${gateway.tcp.prefer-direct:true}")
+    private boolean preferDirect;
+
+    @Value("${gateway.tcp.busy-poll-us:0}")
+    private int busyPollMicros;
+
+    @Value("${gateway.tcp.flush.max-messages:64}")
+    private int flushMaxMessages;
+
+    @Value("${gateway.tcp.flush.max-delay-us:0}")
+    private long flushMaxDelayMicros;
+
     @Autowired
     private GatewayServerHandler serverHandler;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private Channel serverChannel;
+    private final List<Channel> serverChannels = new ArrayList<>();
 
     @PostConstruct
     public void start() {
-        new Thread(() -> {
-            bossGroup = new NioEventLoopGroup(1);
-            workerGroup = new NioEventLoopGroup();
-
-            try {
-                ServerBootstrap bootstrap = new ServerBootstrap();
-                bootstrap.group(bossGroup, workerGroup)
-                        .channel(NioServerSocketChannel.class)
-                        .option(ChannelOption.SO_BACKLOG, 128)
-                        .childOption(ChannelOption.SO_KEEPALIVE, true)
-                        .childOption(ChannelOption.TCP_NODELAY, true)
-                        .childHandler(new ChannelInitializer<SocketChannel>() {
-                            @Override
-                            protected void initChannel(SocketChannel ch) {
-                                ChannelPipeline pipeline = ch.pipeline();
-                                pipeline.addLast(new GatewayMessageDecoder());
-                                pipeline.addLast(new GatewayMessageEncoder());
-                                pipeline.addLast(serverHandler);
-                            }
-                        });
-
-                log.info("Starting TCP server on port {}", port);
-                ChannelFuture future = bootstrap.bind(port).sync();
-                serverChannel = future.channel();
-                log.info("TCP server started successfully on port {}", port);
-
-                serverChannel.closeFuture().sync();
-            } catch (Exception e) {
-                log.error("Failed to start TCP server", e);
-            } finally {
-                shutdown();
+        boolean epoll = useEpoll();
+        // reuse-port时每个boss线程绑定一个acceptor，否则只有一个监听socket，一个boss线程即可
+        int acceptors = epoll && reusePort ? Math.max(1, bossThreads) : 1;
+        if (!epoll && reusePort) {
+            log.warn("gateway.tcp.reuse-port requires epoll transport, binding a single acceptor");
+        }
+        if (!epoll && busyPollMicros > 0) {
+            log.warn("gateway.tcp.busy-poll-us requires epoll transport, ignored");
+        }
+
+        bossGroup = eventLoopGroup(epoll, acceptors, "gateway-boss");
+        // workerThreads为0时由Netty按CPU核数决定
+        workerGroup = eventLoopGroup(epoll, workerThreads, "gateway-io");
+        ByteBufAllocator allocator = "unpooled".equalsIgnoreCase(allocatorType)
+                ? new UnpooledByteBufAllocator(preferDirect)
+                : new PooledByteBufAllocator(preferDirect);
+
+        DistributionSummary messagesPerFlush = DistributionSummary.builder("gateway.flush.messages")
+                .register(meterRegistry);
+
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, backlog)
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline pipeline = ch.pipeline();
+                        pipeline.addLast(new GatewayFlushHandler(flushMaxMessages, flushMaxDelayMicros, messagesPerFlush));
+                        pipeline.addLast(new GatewayMessageDecoder(maxFrameLength));
+                        pipeline.addLast(new GatewayMessageEncoder());
+                        pipeline.addLast(serverHandler);
+                    }
+                });
+        if (receiveBufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+            bootstrap.childOption(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+        if (sendBufferSize > 0) {
+            bootstrap.childOption(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        if (epoll) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, reusePort);
+            if (busyPollMicros > 0) {
+                bootstrap.childOption(EpollChannelOption.SO_BUSY_POLL, busyPollMicros);
+            }
+        }
+
+        log.info("Starting TCP server on port {}: transport={}, acceptors={}, workerThreads={}, backlog={}, allocator={}",
+                port, epoll ? "epoll" : "nio", acceptors, workerThreads > 0 ? workerThreads : "default",
+                backlog, allocatorType);
+        try {
+            for (int i = 0; i < acceptors; i++) {
+                Channel channel = bootstrap.bind(port).sync().channel();
+                serverChannels.add(channel);
+                channel.closeFuture().addListener(f -> log.info("TCP server channel closed: {}", channel.localAddress()));
             }
-        }, "GatewayTcpServer").start();
+        } catch (Exception e) {
+            shutdown();
+            throw new RuntimeException("Failed to start TCP server on port " + port, e);
+        }
+        log.info("TCP server started successfully on port {}", port);
+    }
+
+    private boolean useEpoll() {
+        if ("nio".equalsIgnoreCase(transport)) {
+            return false;
+        }
+        if (Epoll.isAvailable()) {
+            return true;
+        }
+        if ("epoll".equalsIgnoreCase(transport)) {
+            log.warn("Epoll transport unavailable, falling back to NIO", Epoll.unavailabilityCause());
+        }
+        return false;
+    }
+
+    private static EventLoopGroup eventLoopGroup(boolean epoll, int threads, String name) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name);
+        return epoll ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
     }
 
     @PreDestroy
     public void shutdown() {
         log.info("Shutting down TCP server");
-        if (serverChannel != null) {
-            serverChannel.close();
+        for (Channel channel : serverChannels) {
+            channel.close();
         }
+        serverChannels.clear();
         if (workerGroup != null) {
             workerGroup.shutdownGracefully();
         }
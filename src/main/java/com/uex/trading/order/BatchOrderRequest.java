@@ -0,0 +1,13 @@
+package com.uex.trading.order;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchOrderRequest {
+    @NotEmpty(message = "Orders cannot be empty")
+    private List<@Valid OrderRequest> orders;
+}
@@ -0,0 +1,16 @@
+package com.uex.trading.order;
+
+import com.uex.trading.common.OrderStatus;
+import lombok.Data;
+
+/**
+ * 批量下单中单笔订单的结果，code为0表示成功
+ */
+@Data
+public class BatchOrderResult {
+    private String clientOrderId;   // 客户端订单ID
+    private String orderId;         // 订单ID，失败时为空
+    private OrderStatus status;     // 订单状态
+    private int code;               // 0成功，9999失败
+    private String message;         // 失败原因
+}
@@ -0,0 +1,95 @@
+package com.uex.trading.order;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * clientOrderId幂等索引：(userId, clientOrderId) -> orderId
+ *
+ * 本地缓存保证同一节点上的并发重试只有一个能占位；本地未命中时用 SET NX EX 写入
+ * trading:order:client:{userId}:{clientOrderId}，跨节点和重启后的重试同样能找到原订单。
+ * 两层都在ttl后过期，过期后同一个clientOrderId可以重新使用。
+ */
+@Slf4j
+@Component
+public class ClientOrderIndex {
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Value("${redis.keys.order-prefix}")
+    private String orderPrefix;
+
+    @Value("${order.client-order-id.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${order.client-order-id.max-size:1000000}")
+    private long maxSize;
+
+    private Cache<String, String> localIndex;
+
+    @PostConstruct
+    public void init() {
+        localIndex = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * 为新订单占用clientOrderId
+     *
+     * @return null表示占位成功；否则返回之前占用该clientOrderId的orderId
+     */
+    public String reserve(String userId, String clientOrderId, String orderId) {
+        String key = key(userId, clientOrderId);
+        String existing = localIndex.asMap().putIfAbsent(key, orderId);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            RBucket<String> bucket = redissonClient.getBucket(orderPrefix + "client:" + key, StringCodec.INSTANCE);
+            if (bucket.setIfAbsent(orderId, Duration.ofMinutes(ttlMinutes))) {
+                return null;
+            }
+            existing = bucket.get();
+            if (existing == null) {
+                // 刚好过期，重新占位
+                bucket.set(orderId, Duration.ofMinutes(ttlMinutes));
+                return null;
+            }
+        } catch (RuntimeException e) {
+            // Redis失败时撤掉本地占位，否则该clientOrderId在ttl内一直被当作处理中
+            localIndex.asMap().remove(key, orderId);
+            throw e;
+        }
+        localIndex.put(key, existing);
+        return existing;
+    }
+
+    /**
+     * 下单失败时释放占位，客户端可以用同一个clientOrderId重试
+     */
+    public void release(String userId, String clientOrderId, String orderId) {
+        String key = key(userId, clientOrderId);
+        localIndex.asMap().remove(key, orderId);
+        RBucket<String> bucket = redissonClient.getBucket(orderPrefix + "client:" + key, StringCodec.INSTANCE);
+        bucket.compareAndSet(orderId, null);
+    }
+
+    private String key(String userId, String clientOrderId) {
+        return userId + ":" + clientOrderId;
+    }
+}
@@ -3,6 +3,7 @@ package com.uex.trading.order;
 import com.uex.trading.common.OrderSide;
 import com.uex.trading.common.OrderStatus;
 import com.uex.trading.common.OrderType;
+import com.uex.trading.common.TimeInForce;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -25,4 +26,31 @@ public class Order implements Serializable {
     private Long createTime;            // 创建时间
     private Long updateTime;            // 更新时间
     private String clientOrderId;       // 客户端订单ID
+
+    // 以下字段不进入Redis中的Kryo序列化数据（保持与已存订单兼容），由订单日志保存，接口JSON中正常返回
+    private transient TimeInForce timeInForce;  // 有效期类型，为空表示GTC
+    private transient Long expireTime;          // 到期时间（GTT/DAY）
+
+    /**
+     * 浅拷贝，用于日志/异步持久化时取订单当前状态
+     */
+    public Order copy() {
+        Order copy = new Order();
+        copy.setOrderId(orderId);
+        copy.setUserId(userId);
+        copy.setSymbol(symbol);
+        copy.setOrderType(orderType);
+        copy.setSide(side);
+        copy.setPrice(price);
+        copy.setQuantity(quantity);
+        copy.setFilledQty(filledQty);
+        copy.setAvgPrice(avgPrice);
+        copy.setStatus(status);
+        copy.setCreateTime(createTime);
+        copy.setUpdateTime(updateTime);
+        copy.setClientOrderId(clientOrderId);
+        copy.setTimeInForce(timeInForce);
+        copy.setExpireTime(expireTime);
+        return copy;
+    }
 }
@@ -0,0 +1,11 @@
+package com.uex.trading.order;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class OrderAmendRequest {
+    private BigDecimal price;       // 新价格（可选，仅限价单）
+    private BigDecimal quantity;    // 新的订单总数量（可选，需大于已成交数量）
+}
@@ -0,0 +1,132 @@
+package com.uex.trading.order;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.uex.trading.common.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 未完结订单的本地缓存
+ *
+ * 下单和每次成交后更新缓存，订单进入FILLED/CANCELED/REJECTED即移出；撤单和成交处理命中缓存时不读Redis。
+ * 每次写入Redis后通过RTopic（trading:order:cache:invalidate）广播orderId，其他节点收到后丢弃本地副本，下次从Redis重新加载。
+ * 缓存按容量和访问时间淘汰，防止没有收到终态的订单一直占用内存。
+ */
+@Slf4j
+@Component
+public class OrderCache {
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private OrderJournal orderJournal;
+
+    @Value("${redis.keys.order-prefix}")
+    private String orderPrefix;
+
+    @Value("${order.cache.max-size:1000000}")
+    private long maxSize;
+
+    @Value("${order.cache.expire-after-access-minutes:1440}")
+    private long expireAfterAccessMinutes;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private Cache<String, Order> openOrders;
+    private RTopic invalidateTopic;
+    private int listenerId;
+
+    @PostConstruct
+    public void init() {
+        openOrders = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+                .build();
+
+        invalidateTopic = redissonClient.getTopic(orderPrefix + "cache:invalidate", StringCodec.INSTANCE);
+        listenerId = invalidateTopic.addListener(String.class, (channel, message) -> {
+            int sep = message.indexOf(':');
+            if (!message.substring(0, sep).equals(nodeId)) {
+                openOrders.invalidate(message.substring(sep + 1));
+            }
+        });
+
+        // 用订单日志重放出的未完结订单预热
+        for (Order order : orderJournal.openOrders()) {
+            openOrders.put(order.getOrderId(), order);
+        }
+        log.info("Order cache started: nodeId={}, maxSize={}, warmed={}", nodeId, maxSize, openOrders.size());
+    }
+
+    /**
+     * 先查本地缓存，未命中时从Redis加载，未完结的订单放入缓存
+     */
+    public Order get(String orderId) {
+        Order order = openOrders.getIfPresent(orderId);
+        if (order != null) {
+            return order;
+        }
+
+        order = orderMap().get(orderId);
+        if (order != null && !isTerminal(order.getStatus())) {
+            openOrders.put(orderId, order);
+        }
+        return order;
+    }
+
+    /**
+     * 只查本地缓存
+     */
+    public Order peek(String orderId) {
+        return openOrders.getIfPresent(orderId);
+    }
+
+    /**
+     * 订单状态变化时调用，更新本地缓存
+     */
+    public void update(Order order) {
+        if (isTerminal(order.getStatus())) {
+            openOrders.invalidate(order.getOrderId());
+        } else {
+            openOrders.put(order.getOrderId(), order);
+        }
+    }
+
+    /**
+     * 订单写入Redis后调用，通知其他节点失效本地副本
+     */
+    public void invalidateRemote(String orderId) {
+        invalidateTopic.publishAsync(nodeId + ":" + orderId);
+    }
+
+    public long size() {
+        return openOrders.size();
+    }
+
+    public static boolean isTerminal(OrderStatus status) {
+        return status == OrderStatus.FILLED || status == OrderStatus.CANCELED || status == OrderStatus.REJECTED;
+    }
+
+    private RMap<String, Order> orderMap() {
+        return redissonClient.getMap(orderPrefix + "map");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (invalidateTopic != null) {
+            invalidateTopic.removeListener(listenerId);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.uex.trading.order;
+
+import com.uex.trading.common.TimeInForce;
+import com.uex.trading.common.TimingWheel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 订单到期调度
+ *
+ * GTT/DAY订单在expireTime到期，IOC订单在下单后ioc-timeout-ms到期（EMS未回报剩余部分撤销时兜底）。
+ * 到期时间挂在分层时间轮上，添加和取消都是O(1)，不扫描订单表。同一tick到期的订单按order.batch.max-size分块，
+ * 交给单独的撤单线程批量撤单，时间轮线程不访问Redis/EMS（DAY订单都在0点同时到期）。
+ * 启动时从订单日志重放出的未完结订单重新挂上。
+ */
+@Slf4j
+@Component
+public class OrderExpiryScheduler {
+
+    @Autowired
+    private OrderJournal orderJournal;
+
+    @Value("${order.expiry.tick-ms:10}")
+    private long tickMs;
+
+    @Value("${order.expiry.ioc-timeout-ms:1000}")
+    private long iocTimeoutMs;
+
+    @Value("${order.expiry.day-zone:UTC}")
+    private String dayZone;
+
+    @Value("${order.batch.max-size:100}")
+    private int maxBatchSize;
+
+    private final Map<String, TimingWheel.Timeout<String>> timeouts = new ConcurrentHashMap<>();
+    private TimingWheel<String> wheel;
+    private ExecutorService cancelExecutor;
+
+    /**
+     * @param handler 接收到期的orderId，每次最多order.batch.max-size个，在撤单线程上执行
+     */
+    public void start(Consumer<List<String>> handler) {
+        cancelExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "order-expiry-cancel");
+            t.setDaemon(true);
+            return t;
+        });
+        wheel = new TimingWheel<>("order-expiry", tickMs, 9, 4, expired -> {
+            for (String orderId : expired) {
+                timeouts.remove(orderId);
+            }
+            for (int from = 0; from < expired.size(); from += maxBatchSize) {
+                List<String> chunk = expired.subList(from, Math.min(from + maxBatchSize, expired.size()));
+                cancelExecutor.execute(() -> {
+                    try {
+                        handler.accept(chunk);
+                    } catch (Exception e) {
+                        log.error("Failed to cancel expired orders: orders={}", chunk.size(), e);
+                    }
+                });
+            }
+        });
+        wheel.start();
+
+        for (Order order : orderJournal.openOrders()) {
+            schedule(order);
+        }
+        log.info("Order expiry scheduler started: tickMs={}, scheduled={}", tickMs, timeouts.size());
+    }
+
+    /**
+     * GTC订单不挂定时器
+     */
+    public void schedule(Order order) {
+        Long deadline = deadlineOf(order);
+        if (deadline == null) {
+            return;
+        }
+        try {
+            timeouts.put(order.getOrderId(), wheel.schedule(order.getOrderId(), deadline));
+        } catch (IllegalArgumentException e) {
+            log.warn("Order expire time out of range, not scheduled: orderId={}, expireTime={}",
+                    order.getOrderId(), deadline);
+        }
+    }
+
+    /**
+     * 订单完结或已撤单时取消定时器，重复调用无影响
+     */
+    public void cancel(String orderId) {
+        TimingWheel.Timeout<String> timeout = timeouts.remove(orderId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * DAY订单的到期时间：day-zone时区的下一个0点
+     */
+    public long endOfDay(long time) {
+        ZoneId zone = ZoneId.of(dayZone);
+        LocalDate day = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+        return day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private Long deadlineOf(Order order) {
+        TimeInForce timeInForce = order.getTimeInForce();
+        if (timeInForce == TimeInForce.GTT || timeInForce == TimeInForce.DAY) {
+            return order.getExpireTime();
+        }
+        if (timeInForce == TimeInForce.IOC) {
+            return order.getCreateTime() + iocTimeoutMs;
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+        if (cancelExecutor != null) {
+            cancelExecutor.shutdown();
+            try {
+                if (!cancelExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("Order expiry cancel executor did not finish in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
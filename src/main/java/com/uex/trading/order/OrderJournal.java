@@ -0,0 +1,657 @@
+package com.uex.trading.order;
+
+import com.uex.trading.common.OrderSide;
+import com.uex.trading.common.OrderStatus;
+import com.uex.trading.common.OrderType;
+import com.uex.trading.common.TimeInForce;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 订单事件日志：内存映射的本地追加写日志
+ *
+ * 订单状态变化记为紧凑的二进制事件（SUBMITTED / FILLED / AMENDED / CANCEL_REQUESTED / CANCELED），顺序写入
+ * 预分配的内存映射分段文件 order-{firstSeq}.log。每条记录格式：
+ * [int 长度][byte 类型][long 序号][long 时间戳][事件字段...][int CRC32]，长度为0表示分段结束。
+ *
+ * 日志同时在内存中维护未完结订单，定期写入快照 snapshot-{seq}.bin，并删除快照已覆盖的旧分段。
+ * 启动时加载最新快照，再重放快照之后的事件，重建未完结订单；末尾写了一半的记录按CRC丢弃。
+ * 每次启动从新分段开始写，同名的尾部分段（上次运行没有写入事件）清空后复用。
+ * 订单在FILLED（完全成交）或CANCELED（EMS确认撤单）后移出未完结订单，CANCEL_REQUESTED之后仍可能有成交或撤单被拒，不视为完结。
+ * Redis中的订单数据是该日志的投影：完结的订单先移入待投影集合，OrderPersister确认写入Redis后（{@link #projected}）才删除，
+ * 该集合同样写入快照；启动时未完结订单和待投影的完结订单都重新投影，宕机前未写入Redis的完结状态不会丢失。
+ */
+@Slf4j
+@Component
+public class OrderJournal {
+
+    private static final byte SUBMITTED = 1;
+    private static final byte FILLED = 2;
+    private static final byte CANCEL_REQUESTED = 3;
+    private static final byte CANCELED = 4;
+    private static final byte AMENDED = 5;
+
+    private static final String SEGMENT_PREFIX = "order-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private static final int MAX_RECORD_SIZE = 4096;
+
+    @Value("${order.journal.dir:./data/order-journal}")
+    private String journalDir;
+
+    @Value("${order.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${order.journal.snapshot-interval-seconds:300}")
+    private long snapshotIntervalSeconds;
+
+    @Value("${order.journal.force:false}")
+    private boolean forceOnWrite;
+
+    private Path dir;
+    private long segmentSize;
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final Map<String, Order> openOrders = new HashMap<>();
+    private final Map<String, Set<String>> openOrderIdsByUser = new HashMap<>();
+    private final Map<String, Order> closedOrders = new HashMap<>();
+    private MappedByteBuffer segment;
+    private FileChannel segmentChannel;
+    private long sequence;
+    private ScheduledExecutorService snapshotExecutor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        dir = Paths.get(journalDir);
+        Files.createDirectories(dir);
+        segmentSize = (long) segmentSizeMb * 1024 * 1024;
+
+        long snapshotSeq = loadSnapshot();
+        long replayed = replay(snapshotSeq);
+        openSegment(sequence + 1, true);
+
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "order-journal-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(this::snapshotSafely,
+                snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+
+        log.info("Order journal started: dir={}, snapshotSeq={}, replayedEvents={}, openOrders={}, sequence={}",
+                dir.toAbsolutePath(), snapshotSeq, replayed, openOrders.size(), sequence);
+    }
+
+    /**
+     * 重放后的未完结订单副本
+     */
+    public synchronized List<Order> openOrders() {
+        List<Order> orders = new ArrayList<>(openOrders.size());
+        for (Order order : openOrders.values()) {
+            orders.add(order.copy());
+        }
+        return orders;
+    }
+
+    /**
+     * 已完结但尚未确认写入Redis的订单副本
+     */
+    public synchronized List<Order> closedOrders() {
+        List<Order> orders = new ArrayList<>(closedOrders.size());
+        for (Order order : closedOrders.values()) {
+            orders.add(order.copy());
+        }
+        return orders;
+    }
+
+    /**
+     * OrderPersister写入Redis后调用，完结的订单不再需要重新投影
+     */
+    public synchronized void projected(Collection<Order> orders) {
+        for (Order order : orders) {
+            if (OrderCache.isTerminal(order.getStatus())) {
+                closedOrders.remove(order.getOrderId());
+            }
+        }
+    }
+
+    /**
+     * 用户当前未完结订单的副本
+     */
+    public synchronized List<Order> openOrders(String userId) {
+        Set<String> orderIds = openOrderIdsByUser.get(userId);
+        if (orderIds == null) {
+            return new ArrayList<>();
+        }
+        List<Order> orders = new ArrayList<>(orderIds.size());
+        for (String orderId : orderIds) {
+            orders.add(openOrders.get(orderId).copy());
+        }
+        return orders;
+    }
+
+    public synchronized void submitted(Order order) {
+        ByteBuffer buf = begin(SUBMITTED);
+        writeOrder(buf, order);
+        commit();
+        putOpen(order.copy());
+    }
+
+    /**
+     * 批量下单的多条事件在一次加锁内写入
+     */
+    public synchronized void submitted(List<Order> orders) {
+        for (Order order : orders) {
+            ByteBuffer buf = begin(SUBMITTED);
+            writeOrder(buf, order);
+            commit();
+        }
+        for (Order order : orders) {
+            putOpen(order.copy());
+        }
+    }
+
+    /**
+     * @param order 已更新filledQty/avgPrice/status的订单
+     */
+    public synchronized void filled(Order order, BigDecimal quantity, BigDecimal price) {
+        ByteBuffer buf = begin(FILLED);
+        writeString(buf, order.getOrderId());
+        writeDecimal(buf, quantity);
+        writeDecimal(buf, price);
+        writeDecimal(buf, order.getFilledQty());
+        writeDecimal(buf, order.getAvgPrice());
+        buf.put((byte) order.getStatus().ordinal());
+        buf.putLong(order.getUpdateTime());
+        commit();
+        applyFill(order.getOrderId(), order.getFilledQty(), order.getAvgPrice(),
+                order.getStatus(), order.getUpdateTime());
+    }
+
+    /**
+     * @param order 已更新price/quantity的订单
+     */
+    public synchronized void amended(Order order) {
+        ByteBuffer buf = begin(AMENDED);
+        writeString(buf, order.getOrderId());
+        writeDecimal(buf, order.getPrice());
+        writeDecimal(buf, order.getQuantity());
+        buf.putLong(order.getUpdateTime());
+        commit();
+        applyAmend(order.getOrderId(), order.getPrice(), order.getQuantity(), order.getUpdateTime());
+    }
+
+    public synchronized void cancelRequested(String orderId) {
+        ByteBuffer buf = begin(CANCEL_REQUESTED);
+        writeString(buf, orderId);
+        commit();
+    }
+
+    /**
+     * 批量撤单的多条事件在一次加锁内写入
+     */
+    public synchronized void cancelRequested(Collection<String> orderIds) {
+        for (String orderId : orderIds) {
+            ByteBuffer buf = begin(CANCEL_REQUESTED);
+            writeString(buf, orderId);
+            commit();
+        }
+    }
+
+    /**
+     * EMS确认撤单，订单完结
+     */
+    public synchronized void canceled(String orderId) {
+        ByteBuffer buf = begin(CANCELED);
+        writeString(buf, orderId);
+        commit();
+        close(orderId, System.currentTimeMillis());
+    }
+
+    // ------------------------------------------------------------------ 写入
+
+    private ByteBuffer begin(byte type) {
+        scratch.clear();
+        scratch.putInt(0);
+        scratch.put(type);
+        scratch.putLong(sequence + 1);
+        scratch.putLong(System.currentTimeMillis());
+        return scratch;
+    }
+
+    private void commit() {
+        int end = scratch.position();
+        int bodyLength = end - 4;
+        scratch.putInt(0, bodyLength);
+        crc.reset();
+        crc.update(scratch.array(), 4, bodyLength);
+        scratch.putInt((int) crc.getValue());
+        scratch.flip();
+
+        // 分段剩余空间不够时切换分段，剩余部分保持为0作为结束标记
+        if (segment.remaining() < scratch.remaining() + 4) {
+            rollSegment();
+        }
+        segment.put(scratch);
+        sequence++;
+        if (forceOnWrite) {
+            segment.force();
+        }
+    }
+
+    private void rollSegment() {
+        try {
+            segment.force();
+            segmentChannel.close();
+            openSegment(sequence + 1, false);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to roll order journal segment", e);
+        }
+    }
+
+    /**
+     * @param reuseTail 启动时为true：重放后同名分段中不会有序号大于sequence的有效记录，清空后复用
+     */
+    private void openSegment(long firstSeq, boolean reuseTail) throws IOException {
+        Path path = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        if (reuseTail && Files.exists(path)) {
+            log.info("Reusing empty order journal tail segment: {}", path.getFileName());
+            segmentChannel = FileChannel.open(path, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else {
+            segmentChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        log.info("Opened order journal segment: {}", path.getFileName());
+    }
+
+    // ------------------------------------------------------------------ 快照
+
+    private void snapshotSafely() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("Failed to write order journal snapshot", e);
+        }
+    }
+
+    /**
+     * 在锁内序列化未完结订单和待投影的完结订单，锁外写文件，写完后删除快照已覆盖的分段和旧快照
+     */
+    public void snapshot() throws IOException {
+        long snapshotSeq;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_SIZE);
+        synchronized (this) {
+            snapshotSeq = sequence;
+            record.putLong(snapshotSeq);
+            record.putInt(openOrders.size());
+            out.write(record.array(), 0, record.position());
+            for (Order order : openOrders.values()) {
+                record.clear();
+                writeOrder(record, order);
+                record.put((byte) order.getStatus().ordinal());
+                writeDecimal(record, order.getFilledQty());
+                writeDecimal(record, order.getAvgPrice());
+                record.putLong(order.getUpdateTime());
+                out.write(record.array(), 0, record.position());
+            }
+            record.clear();
+            record.putInt(closedOrders.size());
+            out.write(record.array(), 0, record.position());
+            for (Order order : closedOrders.values()) {
+                record.clear();
+                writeOrder(record, order);
+                record.put((byte) order.getStatus().ordinal());
+                writeDecimal(record, order.getFilledQty());
+                writeDecimal(record, order.getAvgPrice());
+                record.putLong(order.getUpdateTime());
+                out.write(record.array(), 0, record.position());
+            }
+        }
+        CRC32 checksum = new CRC32();
+        byte[] bytes = out.toByteArray();
+        checksum.update(bytes);
+        ByteBuffer data = ByteBuffer.allocate(bytes.length + 4);
+        data.put(bytes);
+        data.putInt((int) checksum.getValue());
+        data.flip();
+
+        Path target = dir.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, snapshotSeq, SNAPSHOT_SUFFIX));
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        cleanUp(snapshotSeq);
+        log.info("Order journal snapshot written: seq={}", snapshotSeq);
+    }
+
+    private void cleanUp(long snapshotSeq) throws IOException {
+        for (Path snapshot : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (seqOf(snapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < snapshotSeq) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+        // 下一个分段的起始序号不大于snapshotSeq + 1时，该分段的记录都已包含在快照中
+        List<Path> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (seqOf(segments.get(i + 1), SEGMENT_PREFIX, SEGMENT_SUFFIX) <= snapshotSeq + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ 恢复
+
+    private long loadSnapshot() throws IOException {
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (data.limit() < 16) {
+                continue;
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(data.array(), 0, data.limit() - 4);
+            if ((int) checksum.getValue() != data.getInt(data.limit() - 4)) {
+                log.warn("Skipping corrupted order journal snapshot: {}", path.getFileName());
+                continue;
+            }
+
+            long snapshotSeq = data.getLong();
+            int count = data.getInt();
+            for (int n = 0; n < count; n++) {
+                putOpen(readSnapshotOrder(data));
+            }
+            int closed = data.getInt();
+            for (int n = 0; n < closed; n++) {
+                Order order = readSnapshotOrder(data);
+                closedOrders.put(order.getOrderId(), order);
+            }
+            sequence = snapshotSeq;
+            return snapshotSeq;
+        }
+        return 0L;
+    }
+
+    private static Order readSnapshotOrder(ByteBuffer data) {
+        Order order = readOrder(data);
+        order.setStatus(OrderStatus.values()[data.get()]);
+        order.setFilledQty(readDecimal(data));
+        order.setAvgPrice(readDecimal(data));
+        order.setUpdateTime(data.getLong());
+        return order;
+    }
+
+    private long replay(long afterSeq) throws IOException {
+        long replayed = 0;
+        for (Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buf.remaining() >= 4) {
+                    int bodyLength = buf.getInt();
+                    if (bodyLength <= 0 || bodyLength + 4 > buf.remaining()) {
+                        break;
+                    }
+                    byte[] body = new byte[bodyLength];
+                    buf.get(body);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != buf.getInt()) {
+                        log.warn("Order journal record checksum mismatch, stop replaying segment: {}",
+                                path.getFileName());
+                        break;
+                    }
+                    ByteBuffer record = ByteBuffer.wrap(body);
+                    byte type = record.get();
+                    long seq = record.getLong();
+                    long timestamp = record.getLong();
+                    if (seq <= afterSeq) {
+                        continue;
+                    }
+                    apply(type, timestamp, record);
+                    sequence = seq;
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    private void apply(byte type, long timestamp, ByteBuffer record) {
+        switch (type) {
+            case SUBMITTED:
+                Order order = readOrder(record);
+                order.setStatus(OrderStatus.PENDING);
+                order.setFilledQty(BigDecimal.ZERO);
+                order.setAvgPrice(BigDecimal.ZERO);
+                order.setUpdateTime(order.getCreateTime());
+                putOpen(order);
+                break;
+            case FILLED:
+                String orderId = readString(record);
+                readDecimal(record);
+                readDecimal(record);
+                BigDecimal filledQty = readDecimal(record);
+                BigDecimal avgPrice = readDecimal(record);
+                OrderStatus status = OrderStatus.values()[record.get()];
+                applyFill(orderId, filledQty, avgPrice, status, record.getLong());
+                break;
+            case AMENDED:
+                applyAmend(readString(record), readDecimal(record), readDecimal(record), record.getLong());
+                break;
+            case CANCEL_REQUESTED:
+                readString(record);
+                break;
+            case CANCELED:
+                close(readString(record), timestamp);
+                break;
+            default:
+                log.warn("Unknown order journal event type: {}", type);
+        }
+    }
+
+    private void putOpen(Order order) {
+        openOrders.put(order.getOrderId(), order);
+        openOrderIdsByUser.computeIfAbsent(order.getUserId(), k -> new HashSet<>()).add(order.getOrderId());
+    }
+
+    private Order removeOpen(String orderId) {
+        Order removed = openOrders.remove(orderId);
+        if (removed == null) {
+            return null;
+        }
+        Set<String> orderIds = openOrderIdsByUser.get(removed.getUserId());
+        if (orderIds != null && orderIds.remove(orderId) && orderIds.isEmpty()) {
+            openOrderIdsByUser.remove(removed.getUserId());
+        }
+        return removed;
+    }
+
+    /**
+     * 撤单确认：移出未完结订单，放入待投影集合
+     */
+    private void close(String orderId, long updateTime) {
+        Order order = removeOpen(orderId);
+        if (order != null) {
+            order.setStatus(OrderStatus.CANCELED);
+            order.setUpdateTime(updateTime);
+            closedOrders.put(orderId, order);
+        }
+    }
+
+    private void applyFill(String orderId, BigDecimal filledQty, BigDecimal avgPrice,
+                           OrderStatus status, long updateTime) {
+        Order open = openOrders.get(orderId);
+        if (open == null) {
+            return;
+        }
+        open.setFilledQty(filledQty);
+        open.setAvgPrice(avgPrice);
+        open.setStatus(status);
+        open.setUpdateTime(updateTime);
+        if (OrderCache.isTerminal(status)) {
+            removeOpen(orderId);
+            closedOrders.put(orderId, open);
+        }
+    }
+
+    private void applyAmend(String orderId, BigDecimal price, BigDecimal quantity, long updateTime) {
+        Order open = openOrders.get(orderId);
+        if (open == null) {
+            return;
+        }
+        open.setPrice(price);
+        open.setQuantity(quantity);
+        open.setUpdateTime(updateTime);
+    }
+
+    // ------------------------------------------------------------------ 编码
+
+    private static void writeOrder(ByteBuffer buf, Order order) {
+        writeString(buf, order.getOrderId());
+        writeString(buf, order.getUserId());
+        writeString(buf, order.getSymbol());
+        buf.put((byte) order.getOrderType().ordinal());
+        buf.put((byte) order.getSide().ordinal());
+        writeDecimal(buf, order.getPrice());
+        writeDecimal(buf, order.getQuantity());
+        buf.putLong(order.getCreateTime());
+        writeString(buf, order.getClientOrderId());
+        buf.put(order.getTimeInForce() != null ? (byte) order.getTimeInForce().ordinal() : -1);
+        buf.putLong(order.getExpireTime() != null ? order.getExpireTime() : 0L);
+    }
+
+    private static Order readOrder(ByteBuffer buf) {
+        Order order = new Order();
+        order.setOrderId(readString(buf));
+        order.setUserId(readString(buf));
+        order.setSymbol(readString(buf));
+        order.setOrderType(OrderType.values()[buf.get()]);
+        order.setSide(OrderSide.values()[buf.get()]);
+        order.setPrice(readDecimal(buf));
+        order.setQuantity(readDecimal(buf));
+        order.setCreateTime(buf.getLong());
+        order.setClientOrderId(readString(buf));
+        byte timeInForce = buf.get();
+        order.setTimeInForce(timeInForce >= 0 ? TimeInForce.values()[timeInForce] : null);
+        long expireTime = buf.getLong();
+        order.setExpireTime(expireTime > 0 ? expireTime : null);
+        return order;
+    }
+
+    /**
+     * short长度 + UTF-8，null写为-1
+     */
+    private static void writeString(ByteBuffer buf, String value) {
+        if (value == null) {
+            buf.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        short length = buf.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * byte scale + long unscaled，null写为scale -128
+     */
+    private static void writeDecimal(ByteBuffer buf, BigDecimal value) {
+        if (value == null) {
+            buf.put(Byte.MIN_VALUE);
+            return;
+        }
+        buf.put((byte) value.scale());
+        buf.putLong(value.unscaledValue().longValueExact());
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buf) {
+        byte scale = buf.get();
+        if (scale == Byte.MIN_VALUE) {
+            return null;
+        }
+        return new BigDecimal(BigInteger.valueOf(buf.getLong()), scale);
+    }
+
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*" + suffix)) {
+            stream.forEach(paths::add);
+        }
+        // 文件名中的序号定长补0，按文件名排序即按序号排序
+        paths.sort(null);
+        return paths;
+    }
+
+    private static long seqOf(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down order journal");
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdown();
+        }
+        synchronized (this) {
+            if (segment != null) {
+                segment.force();
+            }
+            try {
+                if (segmentChannel != null) {
+                    segmentChannel.close();
+                }
+            } catch (IOException e) {
+                log.error("Failed to close order journal segment", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.uex.trading.order;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 订单/成交异步写入Redis
+ *
+ * 下单和成交处理只把订单快照和成交记录放入内存，由单独的线程按数量或时间用RBatch流水线写入。
+ * 同一订单在一个刷新周期内的多次更新只写最后一次。订单状态以订单日志为准，Redis是它的投影：
+ * 完结的订单写入成功后通知订单日志（{@link OrderJournal#projected}），启动时重新投影未完结订单和尚未确认写入的完结订单。
+ * 尚未写入Redis的订单可通过pending查到，写入后再通知其他节点失效本地缓存。
+ *
+ * 待写条目达到capacity时写入方阻塞等待；写入失败整批重试。关闭时不中断写入线程，由它写完已取出和剩余的数据后退出。
+ */
+@Slf4j
+@Component
+public class OrderPersister {
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private OrderCache orderCache;
+
+    @Autowired
+    private OrderJournal orderJournal;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${redis.keys.order-prefix}")
+    private String orderPrefix;
+
+    @Value("${redis.keys.trade-prefix}")
+    private String tradePrefix;
+
+    @Value("${order.persister.capacity:200000}")
+    private int capacity;
+
+    @Value("${order.persister.batch-size:500}")
+    private int batchSize;
+
+    @Value("${order.persister.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    @Value("${order.persister.retry-interval-ms:1000}")
+    private long retryIntervalMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private Map<String, Order> pendingOrders = new LinkedHashMap<>();
+    private List<Trade> pendingTrades = new ArrayList<>();
+    private Map<String, Order> inFlightOrders = Collections.emptyMap();
+    private long oldestPendingTime;
+    private long inFlightSince;
+
+    private volatile boolean running;
+    private Thread writerThread;
+    private Timer flushLatency;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("order.persister.queue.depth", this, OrderPersister::depth).register(meterRegistry);
+        Gauge.builder("order.persister.lag", this, OrderPersister::lagMillis)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        flushLatency = Timer.builder("order.persister.flush.latency").register(meterRegistry);
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "order-persister");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        // 订单日志重放出的未完结订单和未确认写入的完结订单重新投影到Redis，补上宕机前未写入的部分
+        List<Order> replayed = orderJournal.openOrders();
+        replayed.addAll(orderJournal.closedOrders());
+        for (Order order : replayed) {
+            saveOrder(order);
+        }
+        log.info("Order persister started: capacity={}, batchSize={}, flushIntervalMs={}, replayedOrders={}",
+                capacity, batchSize, flushIntervalMs, replayed.size());
+    }
+
+    /**
+     * 保存订单当前状态的快照，覆盖同一订单尚未写入的旧快照
+     */
+    public void saveOrder(Order order) {
+        Order snapshot = order.copy();
+        lock.lock();
+        try {
+            awaitCapacity();
+            markPending();
+            pendingOrders.put(snapshot.getOrderId(), snapshot);
+            signalIfFull();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void saveTrade(Trade trade) {
+        lock.lock();
+        try {
+            awaitCapacity();
+            markPending();
+            pendingTrades.add(trade);
+            signalIfFull();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 尚未写入Redis（排队中或正在写入）的订单
+     */
+    public Order pending(String orderId) {
+        lock.lock();
+        try {
+            Order order = pendingOrders.get(orderId);
+            if (order == null) {
+                order = inFlightOrders.get(orderId);
+            }
+            return order;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 用户尚未写入Redis的订单，用于补全Redis索引
+     */
+    public List<Order> pendingOrders(String userId) {
+        List<Order> orders = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Order order : pendingOrders.values()) {
+                if (order.getUserId().equals(userId)) {
+                    orders.add(order);
+                }
+            }
+            for (Order order : inFlightOrders.values()) {
+                if (order.getUserId().equals(userId) && !pendingOrders.containsKey(order.getOrderId())) {
+                    orders.add(order);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return orders;
+    }
+
+    /**
+     * 用户订单索引，score为创建时间：
+     * - trading:order:user:{userId}:open[:{symbol}]     未完结订单
+     * - trading:order:user:{userId}:history[:{symbol}]  已完结订单
+     * 订单完结时从open移到history，重复写入结果不变
+     */
+    public void addToIndex(RBatch batch, Order order) {
+        String userId = order.getUserId();
+        String symbol = order.getSymbol();
+        String orderId = order.getOrderId();
+        double score = order.getCreateTime() != null ? order.getCreateTime() : 0;
+
+        if (OrderCache.isTerminal(order.getStatus())) {
+            batch.getScoredSortedSet(userOrderKey(userId, "open", null), StringCodec.INSTANCE).removeAsync(orderId);
+            batch.getScoredSortedSet(userOrderKey(userId, "open", symbol), StringCodec.INSTANCE).removeAsync(orderId);
+            batch.getScoredSortedSet(userOrderKey(userId, "history", null), StringCodec.INSTANCE).addAsync(score, orderId);
+            batch.getScoredSortedSet(userOrderKey(userId, "history", symbol), StringCodec.INSTANCE).addAsync(score, orderId);
+        } else {
+            batch.getScoredSortedSet(userOrderKey(userId, "open", null), StringCodec.INSTANCE).addAsync(score, orderId);
+            batch.getScoredSortedSet(userOrderKey(userId, "open", symbol), StringCodec.INSTANCE).addAsync(score, orderId);
+        }
+    }
+
+    public String userOrderKey(String userId, String state, String symbol) {
+        String key = orderPrefix + "user:" + userId + ":" + state;
+        return symbol == null ? key : key + ":" + symbol;
+    }
+
+    private void awaitCapacity() {
+        while (depth() >= capacity) {
+            try {
+                notFull.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for order persister", e);
+            }
+        }
+    }
+
+    private void markPending() {
+        if (pendingOrders.isEmpty() && pendingTrades.isEmpty()) {
+            oldestPendingTime = System.currentTimeMillis();
+            notEmpty.signal();
+        }
+    }
+
+    private void signalIfFull() {
+        if (depth() >= batchSize) {
+            notEmpty.signal();
+        }
+    }
+
+    private int depth() {
+        return pendingOrders.size() + pendingTrades.size();
+    }
+
+    private double lagMillis() {
+        lock.lock();
+        try {
+            if (inFlightSince > 0) {
+                return System.currentTimeMillis() - inFlightSince;
+            }
+            if (pendingOrders.isEmpty() && pendingTrades.isEmpty()) {
+                return 0;
+            }
+            return System.currentTimeMillis() - oldestPendingTime;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        Map<String, Order> orders = null;
+        List<Trade> trades = null;
+        while (true) {
+            if (orders == null) {
+                lock.lock();
+                try {
+                    // 攒批：达到batchSize或最早的条目等待超过flushIntervalMs即写入，关闭时不再等待
+                    while (running && pendingOrders.isEmpty() && pendingTrades.isEmpty()) {
+                        notEmpty.await();
+                    }
+                    if (pendingOrders.isEmpty() && pendingTrades.isEmpty()) {
+                        break;
+                    }
+                    long remaining = oldestPendingTime + flushIntervalMs - System.currentTimeMillis();
+                    while (running && depth() < batchSize && remaining > 0) {
+                        notEmpty.await(remaining, TimeUnit.MILLISECONDS);
+                        remaining = oldestPendingTime + flushIntervalMs - System.currentTimeMillis();
+                    }
+                    orders = pendingOrders;
+                    trades = pendingTrades;
+                    inFlightOrders = orders;
+                    inFlightSince = oldestPendingTime;
+                    pendingOrders = new LinkedHashMap<>();
+                    pendingTrades = new ArrayList<>();
+                    notFull.signalAll();
+                } catch (InterruptedException e) {
+                    log.warn("Order persister writer interrupted while waiting");
+                    continue;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            try {
+                if (writeWithRetry(orders, trades)) {
+                    orderJournal.projected(orders.values());
+                }
+            } catch (InterruptedException e) {
+                // 已取出的数据保持在写入中，下一轮继续写入
+                log.warn("Order persister writer interrupted, keeping {} orders and {} trades in flight",
+                        orders.size(), trades.size());
+                continue;
+            }
+            lock.lock();
+            try {
+                inFlightOrders = Collections.emptyMap();
+                inFlightSince = 0;
+            } finally {
+                lock.unlock();
+            }
+            orders = null;
+            trades = null;
+        }
+        log.info("Order persister writer stopped");
+    }
+
+    /**
+     * 失败后按间隔重试；停机过程中再失败一次即放弃，避免停机无限等待（放弃的完结订单下次启动时重新投影）
+     *
+     * @return 是否写入成功
+     */
+    private boolean writeWithRetry(Map<String, Order> orders, List<Trade> trades) throws InterruptedException {
+        while (true) {
+            try {
+                write(orders, trades);
+                return true;
+            } catch (Exception e) {
+                if (!running) {
+                    log.error("Failed to persist orders on shutdown, lost {} orders and {} trades",
+                            orders.size(), trades.size(), e);
+                    return false;
+                }
+                log.error("Failed to write {} orders and {} trades, retrying in {} ms",
+                        orders.size(), trades.size(), retryIntervalMs, e);
+                Thread.sleep(retryIntervalMs);
+            }
+        }
+    }
+
+    /**
+     * 按batchSize分批写入；成交List的RPUSH在整批重试时可能重复，其余命令重复执行结果不变
+     */
+    private void write(Map<String, Order> orders, List<Trade> trades) {
+        long start = System.nanoTime();
+        List<Order> orderList = new ArrayList<>(orders.values());
+        int total = orderList.size() + trades.size();
+        for (int from = 0; from < total; from += batchSize) {
+            RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+            for (int i = from; i < Math.min(from + batchSize, total); i++) {
+                if (i < orderList.size()) {
+                    Order order = orderList.get(i);
+                    batch.<String, Order>getMap(orderPrefix + "map").fastPutAsync(order.getOrderId(), order);
+                    addToIndex(batch, order);
+                } else {
+                    Trade trade = trades.get(i - orderList.size());
+                    long tradeTime = trade.getTradeTime() != null ? trade.getTradeTime() : System.currentTimeMillis();
+                    batch.<Trade>getList(tradePrefix + "order:" + trade.getOrderId()).addAsync(trade);
+                    batch.<Trade>getScoredSortedSet(tradePrefix + "history:" + trade.getUserId())
+                            .addAsync(tradeTime, trade);
+                }
+            }
+            batch.execute();
+        }
+        for (Order order : orderList) {
+            orderCache.invalidateRemote(order.getOrderId());
+        }
+        flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Orders persisted: orders={}, trades={}", orderList.size(), trades.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down order persister");
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (writerThread == null) {
+            return;
+        }
+        try {
+            writerThread.join(retryIntervalMs + 10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            lock.lock();
+            try {
+                log.error("Order persister writer did not finish on shutdown, pending={}, inFlight={}",
+                        depth(), inFlightOrders.size());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
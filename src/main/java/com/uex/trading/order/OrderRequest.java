@@ -2,6 +2,7 @@ package com.uex.trading.order;
 
 import com.uex.trading.common.OrderSide;
 import com.uex.trading.common.OrderType;
+import com.uex.trading.common.TimeInForce;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -25,4 +26,8 @@ public class OrderRequest {
     private BigDecimal quantity;
 
     private String clientOrderId;   // 客户端订单ID（可选）
+
+    private TimeInForce timeInForce; // 有效期类型（可选，默认GTC）
+
+    private Long expireTime;        // 到期时间，毫秒时间戳（GTT必填）
 }
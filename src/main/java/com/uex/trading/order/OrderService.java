@@ -4,20 +4,33 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.uex.trading.asset.AssetService;
+import com.uex.trading.common.CursorPage;
+import com.uex.trading.common.CursorPager;
+import com.uex.trading.common.FixedPoint;
+import com.uex.trading.common.IdGenerator;
 import com.uex.trading.common.OrderSide;
 import com.uex.trading.common.OrderStatus;
 import com.uex.trading.common.OrderType;
+import com.uex.trading.common.TimeInForce;
 import com.uex.trading.gateway.GatewayMessage;
 import com.uex.trading.gateway.GatewayResponseDispatcher;
 import com.uex.trading.gateway.GatewayTcpClient;
+import com.uex.trading.risk.RiskEngine;
 import com.uex.trading.symbol.SymbolInfo;
+import com.uex.trading.symbol.SymbolRegistry;
 import com.uex.trading.symbol.SymbolService;
 import com.uex.trading.zeromq.EmsMessage;
 import com.uex.trading.zeromq.ZeroMqClient;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
 import org.redisson.api.RList;
 import org.redisson.api.RMap;
+import org.redisson.api.RScoredSortedSet;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.ScoredEntry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
@@ -25,7 +38,16 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Slf4j
@@ -45,22 +67,191 @@ public class OrderService {
     @Autowired
     private SymbolService symbolService;
 
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
     @Autowired
     private AssetService assetService;
 
+    @Autowired
+    private OrderCache orderCache;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private ClientOrderIndex clientOrderIndex;
+
+    @Autowired
+    private RiskEngine riskEngine;
+
+    @Autowired
+    private OrderJournal orderJournal;
+
+    @Autowired
+    private OrderPersister orderPersister;
+
+    @Autowired
+    private OrderExpiryScheduler orderExpiryScheduler;
+
     @Value("${redis.keys.order-prefix}")
     private String orderPrefix;
 
     @Value("${redis.keys.trade-prefix}")
     private String tradePrefix;
 
+    @Value("${order.batch.max-size:100}")
+    private int maxBatchSize;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * 按orderId分段的锁，改单与成交结算都会修改缓存中的同一个Order并按其价格/数量计算冻结金额，须互斥
+     */
+    private final Object[] orderLocks = new Object[1024];
+
+    {
+        for (int i = 0; i < orderLocks.length; i++) {
+            orderLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        orderExpiryScheduler.start(this::expireOrders);
+    }
+
     public Order submitOrder(String userId, OrderRequest request) {
         // 参数校验
-        validateOrderRequest(request);
+        int symbolId = validateOrderRequest(request);
 
         // 创建订单
+        Order order = newOrder(userId, request);
+
+        // clientOrderId幂等：重试直接返回原订单，不重复冻结和发送EMS
+        Order existing = reserveClientOrderId(userId, order);
+        if (existing != null) {
+            return existing;
+        }
+
+        // 风控检查，通过后冻结资金并写入订单日志
+        boolean frozen = false;
+        try {
+            checkRisk(userId, symbolId, order);
+            assetService.freezeAsset(userId, order);
+            frozen = true;
+            orderJournal.submitted(order);
+        } catch (RuntimeException e) {
+            if (frozen) {
+                assetService.unfreezeAsset(order);
+            }
+            releaseReservation(userId, order);
+            throw e;
+        }
+
+        // 保存订单到Redis（订单日志的投影，异步写入）
+        saveOrder(order);
+
+        // 不再主动发送到网关，网关会通过TCP请求我们
+        // sendOrderToGateway(order);
+
+        // 先挂到期定时器再通知EMS，保证EMS回报订单完结时定时器已存在、能被取消
+        orderExpiryScheduler.schedule(order);
+        // 发送消息给EMS
+        notifyEmsOrderSubmit(order);
+
+        log.info("Order submitted: orderId={}, symbol={}, side={}, type={}, price={}, qty={}",
+                order.getOrderId(), order.getSymbol(), order.getSide(), order.getOrderType(),
+                order.getPrice(), order.getQuantity());
+
+        return order;
+    }
+
+    /**
+     * 批量下单：逐笔校验和风控，冻结按币种合并为一次账本更新，订单日志一次加锁写入，
+     * Redis写入在同一个批次中完成。单笔失败不影响其他订单，结果顺序与请求一致。
+     */
+    public List<BatchOrderResult> submitOrders(String userId, List<OrderRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new RuntimeException("Orders cannot be empty");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new RuntimeException("Too many orders in batch: " + requests.size() + " > " + maxBatchSize);
+        }
+
+        BatchOrderResult[] results = new BatchOrderResult[requests.size()];
+        List<Order> candidates = new ArrayList<>(requests.size());
+        List<Integer> positions = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            OrderRequest request = requests.get(i);
+            try {
+                int symbolId = validateOrderRequest(request);
+                Order order = newOrder(userId, request);
+                Order existing = reserveClientOrderId(userId, order);
+                if (existing != null) {
+                    results[i] = batchResult(existing);
+                    continue;
+                }
+                try {
+                    checkRisk(userId, symbolId, order);
+                } catch (RuntimeException e) {
+                    releaseReservation(userId, order);
+                    throw e;
+                }
+                candidates.add(order);
+                positions.add(i);
+            } catch (RuntimeException e) {
+                results[i] = batchError(request.getClientOrderId(), e.getMessage());
+            }
+        }
+
+        // 冻结失败的订单释放风控额度和clientOrderId
+        String[] freezeErrors = candidates.isEmpty() ? new String[0] : assetService.freezeAssets(userId, candidates);
+        List<Order> accepted = new ArrayList<>(candidates.size());
+        for (int n = 0; n < candidates.size(); n++) {
+            Order order = candidates.get(n);
+            if (freezeErrors[n] != null) {
+                releaseReservation(userId, order);
+                results[positions.get(n)] = batchError(order.getClientOrderId(), freezeErrors[n]);
+            } else {
+                accepted.add(order);
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            try {
+                orderJournal.submitted(accepted);
+            } catch (RuntimeException e) {
+                log.error("Failed to journal batch orders: userId={}, orders={}", userId, accepted.size(), e);
+                for (Order order : accepted) {
+                    assetService.unfreezeAsset(order);
+                    releaseReservation(userId, order);
+                }
+                accepted.clear();
+                for (int n = 0; n < candidates.size(); n++) {
+                    if (results[positions.get(n)] == null) {
+                        results[positions.get(n)] = batchError(candidates.get(n).getClientOrderId(), e.getMessage());
+                    }
+                }
+            }
+        }
+
+        for (Order order : accepted) {
+            saveOrder(order);
+            orderExpiryScheduler.schedule(order);
+            notifyEmsOrderSubmit(order);
+        }
+        for (int n = 0; n < candidates.size(); n++) {
+            if (results[positions.get(n)] == null) {
+                results[positions.get(n)] = batchResult(candidates.get(n));
+            }
+        }
+
+        log.info("Batch orders submitted: userId={}, requested={}, accepted={}", userId, requests.size(), accepted.size());
+        return Arrays.asList(results);
+    }
+
+    private Order newOrder(String userId, OrderRequest request) {
         Order order = new Order();
         order.setOrderId(generateOrderId());
         order.setUserId(userId);
@@ -75,24 +266,65 @@ public class OrderService {
         order.setCreateTime(System.currentTimeMillis());
         order.setUpdateTime(System.currentTimeMillis());
         order.setClientOrderId(request.getClientOrderId());
+        order.setTimeInForce(request.getTimeInForce() != null ? request.getTimeInForce() : TimeInForce.GTC);
+        if (order.getTimeInForce() == TimeInForce.GTT) {
+            order.setExpireTime(request.getExpireTime());
+        } else if (order.getTimeInForce() == TimeInForce.DAY) {
+            order.setExpireTime(orderExpiryScheduler.endOfDay(order.getCreateTime()));
+        }
+        return order;
+    }
 
-        // 资金检查和冻结
-        assetService.freezeAsset(userId, order);
-
-        // 保存订单到Redis
-        saveOrder(order);
-
-        // 不再主动发送到网关，网关会通过TCP请求我们
-        // sendOrderToGateway(order);
+    /**
+     * 占用clientOrderId
+     *
+     * @return 同一clientOrderId已下过的订单，未重复时返回null
+     */
+    private Order reserveClientOrderId(String userId, Order order) {
+        String clientOrderId = order.getClientOrderId();
+        if (clientOrderId == null || clientOrderId.isEmpty()) {
+            return null;
+        }
+        String existingOrderId = clientOrderIndex.reserve(userId, clientOrderId, order.getOrderId());
+        if (existingOrderId == null) {
+            return null;
+        }
+        Order existing = getOrder(existingOrderId);
+        if (existing == null) {
+            throw new RuntimeException("Order with clientOrderId is being processed: " + clientOrderId);
+        }
+        log.info("Duplicate order request, returning original order: clientOrderId={}, orderId={}",
+                clientOrderId, existingOrderId);
+        return existing;
+    }
 
-        // 发送消息给EMS
-        notifyEmsOrderSubmit(order);
+    /**
+     * 下单失败时释放风控额度和clientOrderId
+     */
+    private void releaseReservation(String userId, Order order) {
+        riskEngine.release(userId, order.getOrderId());
+        String clientOrderId = order.getClientOrderId();
+        if (clientOrderId != null && !clientOrderId.isEmpty()) {
+            clientOrderIndex.release(userId, clientOrderId, order.getOrderId());
+        }
+    }
 
-        log.info("Order submitted: orderId={}, symbol={}, side={}, type={}, price={}, qty={}",
-                order.getOrderId(), order.getSymbol(), order.getSide(), order.getOrderType(),
-                order.getPrice(), order.getQuantity());
+    private BatchOrderResult batchResult(Order order) {
+        BatchOrderResult result = new BatchOrderResult();
+        result.setClientOrderId(order.getClientOrderId());
+        result.setOrderId(order.getOrderId());
+        result.setStatus(order.getStatus());
+        result.setCode(0);
+        return result;
+    }
 
-        return order;
+    private BatchOrderResult batchError(String clientOrderId, String message) {
+        BatchOrderResult result = new BatchOrderResult();
+        result.setClientOrderId(clientOrderId);
+        result.setStatus(OrderStatus.REJECTED);
+        result.setCode(9999);
+        result.setMessage(message);
+        return result;
     }
 
     public void cancelOrder(String userId, String orderId) {
@@ -105,7 +337,7 @@ public class OrderService {
             throw new RuntimeException("Order does not belong to user");
         }
 
-        if (order.getStatus() == OrderStatus.FILLED || order.getStatus() == OrderStatus.CANCELED) {
+        if (OrderCache.isTerminal(order.getStatus())) {
             throw new RuntimeException("Cannot cancel order in status: " + order.getStatus());
         }
 
@@ -113,29 +345,283 @@ public class OrderService {
         // sendCancelToGateway(order);
 
         // 发送消息给EMS
+        // 风控敞口在EMS确认撤单后释放
+        orderJournal.cancelRequested(orderId);
         notifyEmsOrderCancel(order);
+        orderExpiryScheduler.cancel(orderId);
 
         log.info("Cancel order request sent: orderId={}", orderId);
     }
 
-    public List<Order> getOrderList(String userId, String symbol) {
-        RList<String> orderIds = redissonClient.getList(orderPrefix + "user:" + userId);
-        List<Order> orders = new ArrayList<>();
+    /**
+     * 改单：原orderId上修改价格和/或数量，只冻结或解冻差额，订单一次写入，EMS收到一条ORDER_AMEND
+     *
+     * 与该订单的成交结算互斥，冻结差额按加锁后的价格和已成交数量计算。
+     */
+    public Order amendOrder(String userId, String orderId, OrderAmendRequest request) {
+        synchronized (orderLock(orderId)) {
+            return amendLocked(userId, orderId, request);
+        }
+    }
 
-        for (String orderId : orderIds) {
-            Order order = getOrder(orderId);
-            if (order != null && (symbol == null || order.getSymbol().equals(symbol))) {
+    private Order amendLocked(String userId, String orderId, OrderAmendRequest request) {
+        Order order = getOrder(orderId);
+        if (order == null) {
+            throw new RuntimeException("Order not found: " + orderId);
+        }
+
+        if (!order.getUserId().equals(userId)) {
+            throw new RuntimeException("Order does not belong to user");
+        }
+
+        if (OrderCache.isTerminal(order.getStatus())) {
+            throw new RuntimeException("Cannot amend order in status: " + order.getStatus());
+        }
+
+        if (request.getPrice() == null && request.getQuantity() == null) {
+            throw new RuntimeException("Price or quantity is required for amend");
+        }
+        if (request.getPrice() != null && order.getOrderType() != OrderType.LIMIT) {
+            throw new RuntimeException("Only limit order price can be amended");
+        }
+
+        BigDecimal origPrice = order.getPrice();
+        BigDecimal origQuantity = order.getQuantity();
+        BigDecimal newPrice = request.getPrice() != null ? request.getPrice() : origPrice;
+        BigDecimal newQuantity = request.getQuantity() != null ? request.getQuantity() : origQuantity;
+        if (newQuantity.compareTo(order.getFilledQty()) <= 0) {
+            throw new RuntimeException("Quantity must exceed filled quantity: " + order.getFilledQty());
+        }
+
+        int symbolId = symbolRegistry.requireSymbolId(order.getSymbol());
+        long price = newPrice != null ? toPriceExact(symbolId, newPrice) : 0L;
+        long quantity = toQtyExact(symbolId, newQuantity);
+        long filledQty = FixedPoint.toLong(order.getFilledQty(), symbolRegistry.qtyScale(symbolId));
+        // 调整冻结金额前先校验新价格/数量，非正价格会解冻全部剩余金额
+        if (order.getOrderType() == OrderType.LIMIT && price <= 0) {
+            throw new RuntimeException("Price must be positive");
+        }
+        long tickSize = symbolRegistry.tickSize(symbolId);
+        if (tickSize > 0 && price % tickSize != 0) {
+            throw new RuntimeException("Price not aligned to tick size: " + symbolRegistry.symbolInfo(symbolId).getTickSize());
+        }
+        long stepSize = symbolRegistry.stepSize(symbolId);
+        if (stepSize > 0 && quantity % stepSize != 0) {
+            throw new RuntimeException("Quantity not aligned to step size: " + symbolRegistry.symbolInfo(symbolId).getStepSize());
+        }
+
+        // 先调整冻结金额，风控不通过时还原
+        assetService.amendFrozen(order, newPrice, newQuantity);
+        try {
+            riskEngine.amend(userId, orderId, symbolId, order.getOrderType(), price, quantity, filledQty);
+        } catch (RuntimeException e) {
+            Order amended = order.copy();
+            amended.setPrice(newPrice);
+            amended.setQuantity(newQuantity);
+            assetService.amendFrozen(amended, origPrice, origQuantity);
+            throw e;
+        }
+
+        order.setPrice(newPrice);
+        order.setQuantity(newQuantity);
+        order.setUpdateTime(System.currentTimeMillis());
+        orderJournal.amended(order);
+        saveOrder(order);
+
+        notifyEmsOrderAmend(order, origPrice, origQuantity);
+
+        log.info("Order amended: orderId={}, price={} -> {}, qty={} -> {}",
+                orderId, origPrice, newPrice, origQuantity, newQuantity);
+        return order;
+    }
+
+    /**
+     * 撤销用户的全部未完结订单，symbol为空时撤销所有交易对
+     *
+     * 未完结订单从open索引和尚未写入Redis的订单中取，撤单事件批量写入订单日志，只给EMS发一条ORDER_CANCEL_BATCH。
+     *
+     * @return 发出撤单请求的orderId
+     */
+    public List<String> cancelAllOrders(String userId, String symbol) {
+        Collection<String> indexed = redissonClient.<String>getScoredSortedSet(
+                userOrderKey(userId, "open", symbol), StringCodec.INSTANCE).readAll();
+        if (indexed.isEmpty() && migrateLegacyOrderList(userId)) {
+            return cancelAllOrders(userId, symbol);
+        }
+
+        Set<String> orderIds = new LinkedHashSet<>(indexed);
+        for (Order order : orderPersister.pendingOrders(userId)) {
+            orderIds.add(order.getOrderId());
+        }
+
+        List<Order> orders = new ArrayList<>(orderIds.size());
+        for (Order order : getOrders(new ArrayList<>(orderIds))) {
+            if (!OrderCache.isTerminal(order.getStatus()) && (symbol == null || symbol.equals(order.getSymbol()))) {
                 orders.add(order);
             }
         }
+        if (orders.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> canceled = requestCancels(userId, symbol, orders, "USER");
+        log.info("Cancel all request sent: userId={}, symbol={}, orders={}", userId, symbol, canceled.size());
+        return canceled;
+    }
+
+    /**
+     * 到期回调，在撤单线程上执行，每次最多order.batch.max-size个订单：按用户分组，每个用户发一条ORDER_CANCEL_BATCH
+     */
+    private void expireOrders(List<String> orderIds) {
+        Map<String, List<Order>> byUser = new HashMap<>();
+        for (Order order : getOrders(orderIds)) {
+            if (!OrderCache.isTerminal(order.getStatus())) {
+                byUser.computeIfAbsent(order.getUserId(), k -> new ArrayList<>()).add(order);
+            }
+        }
+        for (Map.Entry<String, List<Order>> entry : byUser.entrySet()) {
+            try {
+                requestCancels(entry.getKey(), null, entry.getValue(), "EXPIRED");
+            } catch (Exception e) {
+                log.error("Failed to cancel expired orders: userId={}", entry.getKey(), e);
+            }
+        }
+        log.info("Expired orders canceled: orders={}, users={}", orderIds.size(), byUser.size());
+    }
+
+    /**
+     * 批量撤单：撤单事件一次写入订单日志，EMS按order.batch.max-size分块收到ORDER_CANCEL_BATCH
+     *
+     * @return 发出撤单请求的orderId
+     */
+    private List<String> requestCancels(String userId, String symbol, List<Order> orders, String reason) {
+        List<String> canceled = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            canceled.add(order.getOrderId());
+        }
+        orderJournal.cancelRequested(canceled);
+        for (int from = 0; from < canceled.size(); from += maxBatchSize) {
+            notifyEmsOrderCancelBatch(userId, symbol,
+                    canceled.subList(from, Math.min(from + maxBatchSize, canceled.size())), reason);
+        }
+        for (String orderId : canceled) {
+            orderExpiryScheduler.cancel(orderId);
+        }
+        return canceled;
+    }
+
+    /**
+     * 用户订单列表，按创建时间倒序，最多limit条
+     *
+     * @param open true只查未完结订单，false只查历史订单，null两者都查
+     */
+    public List<Order> getOrderList(String userId, String symbol, Boolean open, Integer limit) {
+        int size = CursorPager.limit(limit);
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        if (!Boolean.FALSE.equals(open)) {
+            batch.<String>getScoredSortedSet(userOrderKey(userId, "open", symbol), StringCodec.INSTANCE)
+                    .entryRangeReversedAsync(0, size - 1);
+        }
+        if (!Boolean.TRUE.equals(open)) {
+            batch.<String>getScoredSortedSet(userOrderKey(userId, "history", symbol), StringCodec.INSTANCE)
+                    .entryRangeReversedAsync(0, size - 1);
+        }
+
+        List<ScoredEntry<String>> entries = new ArrayList<>();
+        for (Object response : batch.execute().getResponses()) {
+            @SuppressWarnings("unchecked")
+            Collection<ScoredEntry<String>> part = (Collection<ScoredEntry<String>>) response;
+            entries.addAll(part);
+        }
+        if (entries.isEmpty() && migrateLegacyOrderList(userId)) {
+            return getOrderList(userId, symbol, open, limit);
+        }
+
+        entries.sort(Comparator.comparingDouble(ScoredEntry<String>::getScore).reversed());
+        List<String> orderIds = new ArrayList<>(Math.min(entries.size(), size));
+        for (int i = 0; i < entries.size() && i < size; i++) {
+            orderIds.add(entries.get(i).getValue());
+        }
+        return getOrders(orderIds);
+    }
+
+    /**
+     * 按orderId批量取订单，缓存未命中的订单用一次HMGET取回
+     */
+    private List<Order> getOrders(List<String> orderIds) {
+        Map<String, Order> found = new HashMap<>(orderIds.size() * 2);
+        Set<String> missing = new HashSet<>();
+        for (String orderId : orderIds) {
+            Order order = orderCache.peek(orderId);
+            if (order == null) {
+                order = orderPersister.pending(orderId);
+            }
+            if (order != null) {
+                found.put(orderId, order);
+            } else {
+                missing.add(orderId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            RMap<String, Order> orderMap = redissonClient.getMap(orderPrefix + "map");
+            found.putAll(orderMap.getAll(missing));
+        }
 
+        List<Order> orders = new ArrayList<>(orderIds.size());
+        for (String orderId : orderIds) {
+            Order order = found.get(orderId);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
         return orders;
     }
 
-    public List<Trade> getTradeList(String userId, String orderId) {
+    /**
+     * 旧版本的用户订单List（trading:order:user:{userId}）迁移到有序集合索引
+     *
+     * @return 是否迁移了订单
+     */
+    private boolean migrateLegacyOrderList(String userId) {
+        if (redissonClient.getKeys().countExists(userOrderKey(userId, "open", null),
+                userOrderKey(userId, "history", null)) > 0) {
+            return false;
+        }
+        RList<String> legacy = redissonClient.getList(orderPrefix + "user:" + userId);
+        List<String> orderIds = legacy.readAll();
+        if (orderIds.isEmpty()) {
+            return false;
+        }
+
+        RMap<String, Order> orderMap = redissonClient.getMap(orderPrefix + "map");
+        Collection<Order> orders = orderMap.getAll(new HashSet<>(orderIds)).values();
+        if (orders.isEmpty()) {
+            return false;
+        }
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        for (Order order : orders) {
+            addToIndex(batch, order);
+        }
+        batch.execute();
+        log.info("Migrated legacy order list: userId={}, orders={}", userId, orders.size());
+        return true;
+    }
+
+    /**
+     * 订单成交列表，按成交顺序分页
+     */
+    public CursorPage<Trade> getTradeList(String userId, String orderId, String cursor, Integer limit) {
         String key = tradePrefix + "order:" + orderId;
         RList<Trade> trades = redissonClient.getList(key);
-        return new ArrayList<>(trades);
+        return CursorPager.pageByIndex(trades, cursor, limit);
+    }
+
+    /**
+     * 用户成交历史，按成交时间倒序分页
+     */
+    public CursorPage<Trade> getUserTrades(String userId, Long fromTime, Long toTime, String cursor, Integer limit) {
+        RScoredSortedSet<Trade> trades = redissonClient.getScoredSortedSet(tradePrefix + "history:" + userId);
+        return CursorPager.pageByTimeDesc(trades, fromTime, toTime, cursor, limit);
     }
 
     // No longer needed - Gateway sends requests to us via TCP server
@@ -268,47 +754,104 @@ public class OrderService {
     */
 
     // Method to handle trade notification - will be called by ZeroMQ consumer
+    // 处理失败时抛出异常，TradePipeline不会把该成交记为已结算，EMS重放时重新处理
+    // 与同一订单的改单互斥，结算按加锁后的价格/数量计算冻结释放
     public void handleTradeFromEms(Trade trade) {
-        try {
-            String orderId = trade.getOrderId();
-            Order order = getOrder(orderId);
-            if (order == null) {
-                log.error("Order not found for trade: orderId={}", orderId);
-                return;
-            }
+        synchronized (orderLock(trade.getOrderId())) {
+            settleTrade(trade);
+        }
+    }
 
-            // Save trade
-            saveTrade(trade);
+    private void settleTrade(Trade trade) {
+        String orderId = trade.getOrderId();
+        Order order = getOrder(orderId);
+        if (order == null) {
+            throw new RuntimeException("Order not found for trade: " + orderId);
+        }
 
-            // Update order
-            BigDecimal filledQty = order.getFilledQty().add(trade.getQuantity());
-            order.setFilledQty(filledQty);
+        // Update order (fixed-point: qty at stepSize scale, avg price at FixedPoint.SCALE)
+        int symbolId = symbolRegistry.requireSymbolId(order.getSymbol());
+        int priceScale = symbolRegistry.priceScale(symbolId);
+        int qtyScale = symbolRegistry.qtyScale(symbolId);
+        long tradeQty = FixedPoint.toLong(trade.getQuantity(), qtyScale);
+        if (tradeQty <= 0) {
+            // 不足一个数量步长的成交无法按订单精度记账（均价计算会除以0）
+            log.error("Trade quantity below step size, ignored: tradeId={}, orderId={}, qty={}",
+                    trade.getTradeId(), orderId, trade.getQuantity());
+            return;
+        }
 
-            // Update average price
-            BigDecimal totalValue = order.getAvgPrice().multiply(order.getFilledQty().subtract(trade.getQuantity()))
-                    .add(trade.getPrice().multiply(trade.getQuantity()));
-            order.setAvgPrice(totalValue.divide(filledQty, 8, BigDecimal.ROUND_HALF_UP));
+        // Save trade
+        saveTrade(trade);
+
+        long tradePrice = FixedPoint.toLong(trade.getPrice(), priceScale);
+        long prevFilledQty = FixedPoint.toLong(order.getFilledQty(), qtyScale);
+        long prevAvgPrice = FixedPoint.toLong(order.getAvgPrice(), FixedPoint.SCALE);
+        long filledQty = prevFilledQty + tradeQty;
+
+        // Update average price
+        long filledValue = FixedPoint.mulDiv(prevAvgPrice, prevFilledQty, FixedPoint.pow10(qtyScale))
+                + FixedPoint.multiply(tradePrice, priceScale, tradeQty, qtyScale, FixedPoint.SCALE);
+        long avgPrice = FixedPoint.mulDiv(filledValue, FixedPoint.pow10(qtyScale), filledQty);
+        order.setFilledQty(FixedPoint.toDecimal(filledQty, qtyScale));
+        order.setAvgPrice(FixedPoint.toDecimal(avgPrice, FixedPoint.SCALE));
+
+        // Update order status
+        if (filledQty >= FixedPoint.toLong(order.getQuantity(), qtyScale)) {
+            order.setStatus(OrderStatus.FILLED);
+        } else {
+            order.setStatus(OrderStatus.PARTIAL_FILLED);
+        }
+        order.setUpdateTime(System.currentTimeMillis());
+        orderJournal.filled(order, trade.getQuantity(), trade.getPrice());
+        saveOrder(order);
+        riskEngine.onFill(order, tradeQty, tradePrice, OrderCache.isTerminal(order.getStatus()));
+        if (OrderCache.isTerminal(order.getStatus())) {
+            orderExpiryScheduler.cancel(orderId);
+        }
 
-            // Update order status
-            if (filledQty.compareTo(order.getQuantity()) >= 0) {
-                order.setStatus(OrderStatus.FILLED);
-            } else {
-                order.setStatus(OrderStatus.PARTIAL_FILLED);
+        // Update asset
+        assetService.updateAssetOnTrade(trade, order);
+
+        log.info("Trade processed from EMS: tradeId={}, orderId={}, counterOrderId={}, price={}, qty={}",
+                trade.getTradeId(), orderId, trade.getCounterOrderId(), trade.getPrice(), trade.getQuantity());
+    }
+
+    /**
+     * EMS撤单确认：订单置为CANCELED，解冻剩余金额，释放风控敞口；与该订单的成交在同一结算分区按顺序处理，重复确认无影响
+     */
+    public void handleCancelFromEms(String orderId) {
+        synchronized (orderLock(orderId)) {
+            Order order = getOrder(orderId);
+            if (order == null) {
+                throw new RuntimeException("Order not found for cancel: " + orderId);
             }
+            if (OrderCache.isTerminal(order.getStatus())) {
+                log.info("Cancel confirmation for completed order ignored: orderId={}, status={}",
+                        orderId, order.getStatus());
+                return;
+            }
+
+            order.setStatus(OrderStatus.CANCELED);
             order.setUpdateTime(System.currentTimeMillis());
+            orderJournal.canceled(orderId);
             saveOrder(order);
+            riskEngine.release(order.getUserId(), orderId);
+            orderExpiryScheduler.cancel(orderId);
+            assetService.unfreezeAsset(order);
 
-            // Update asset
-            assetService.updateAssetOnTrade(trade, order);
-
-            log.info("Trade processed from EMS: tradeId={}, orderId={}, counterOrderId={}, price={}, qty={}",
-                    trade.getTradeId(), orderId, trade.getCounterOrderId(), trade.getPrice(), trade.getQuantity());
-        } catch (Exception e) {
-            log.error("Failed to process trade from EMS", e);
+            log.info("Order canceled by EMS: orderId={}, filledQty={}", orderId, order.getFilledQty());
         }
     }
 
-    private void validateOrderRequest(OrderRequest request) {
+    private Object orderLock(String orderId) {
+        return orderLocks[(orderId.hashCode() & 0x7fffffff) % orderLocks.length];
+    }
+
+    /**
+     * @return 交易对id
+     */
+    private int validateOrderRequest(OrderRequest request) {
         SymbolInfo symbolInfo = symbolService.getSymbolInfo(request.getSymbol());
         if (symbolInfo == null) {
             throw new RuntimeException("Symbol not found: " + request.getSymbol());
@@ -317,10 +860,26 @@ public class OrderService {
         if (request.getOrderType() == OrderType.LIMIT && request.getPrice() == null) {
             throw new RuntimeException("Price is required for limit order");
         }
+        if (request.getOrderType() == OrderType.LIMIT && request.getPrice().signum() <= 0) {
+            throw new RuntimeException("Price must be positive");
+        }
 
-        if (request.getQuantity().compareTo(symbolInfo.getMinOrderQty()) < 0) {
-            throw new RuntimeException("Quantity below minimum: " + symbolInfo.getMinOrderQty());
+        if (request.getTimeInForce() == TimeInForce.GTT
+                && (request.getExpireTime() == null || request.getExpireTime() <= System.currentTimeMillis())) {
+            throw new RuntimeException("Future expire time is required for GTT order");
         }
+
+        return symbolRegistry.requireSymbolId(request.getSymbol());
+    }
+
+    /**
+     * 价格和数量按交易对精度精确转换后交给风控引擎，精度超出步长直接拒绝
+     */
+    private void checkRisk(String userId, int symbolId, Order order) {
+        long price = order.getPrice() != null ? toPriceExact(symbolId, order.getPrice()) : 0L;
+        long quantity = toQtyExact(symbolId, order.getQuantity());
+
+        riskEngine.reserve(userId, order.getOrderId(), symbolId, order.getOrderType(), price, quantity);
     }
 
     // No longer needed - Gateway connects to us as TCP server
@@ -370,6 +929,62 @@ public class OrderService {
         }
     }
 
+    private long toPriceExact(int symbolId, BigDecimal price) {
+        try {
+            return FixedPoint.toLongExact(price, symbolRegistry.priceScale(symbolId));
+        } catch (ArithmeticException e) {
+            throw new RuntimeException("Price not aligned to tick size: " + symbolRegistry.symbolInfo(symbolId).getTickSize());
+        }
+    }
+
+    private long toQtyExact(int symbolId, BigDecimal quantity) {
+        try {
+            return FixedPoint.toLongExact(quantity, symbolRegistry.qtyScale(symbolId));
+        } catch (ArithmeticException e) {
+            throw new RuntimeException("Quantity not aligned to step size: " + symbolRegistry.symbolInfo(symbolId).getStepSize());
+        }
+    }
+
+    private void notifyEmsOrderAmend(Order order, BigDecimal origPrice, BigDecimal origQuantity) {
+        try {
+            Map<String, Object> data = new HashMap<>();
+            data.put("orderId", order.getOrderId());
+            data.put("price", order.getPrice());
+            data.put("quantity", order.getQuantity());
+            data.put("origPrice", origPrice);
+            data.put("origQuantity", origQuantity);
+
+            EmsMessage emsMessage = new EmsMessage();
+            emsMessage.setEventType("ORDER_AMEND");
+            emsMessage.setOrderId(order.getOrderId());
+            emsMessage.setTimestamp(System.currentTimeMillis());
+            emsMessage.setData(objectMapper.writeValueAsString(data));
+
+            zeroMqClient.sendToEms(emsMessage);
+        } catch (Exception e) {
+            log.error("Failed to notify EMS for order amend", e);
+        }
+    }
+
+    private void notifyEmsOrderCancelBatch(String userId, String symbol, List<String> orderIds, String reason) {
+        try {
+            Map<String, Object> data = new HashMap<>();
+            data.put("userId", userId);
+            data.put("symbol", symbol);
+            data.put("orderIds", orderIds);
+            data.put("reason", reason);
+
+            EmsMessage emsMessage = new EmsMessage();
+            emsMessage.setEventType("ORDER_CANCEL_BATCH");
+            emsMessage.setTimestamp(System.currentTimeMillis());
+            emsMessage.setData(objectMapper.writeValueAsString(data));
+
+            zeroMqClient.sendToEms(emsMessage);
+        } catch (Exception e) {
+            log.error("Failed to notify EMS for batch order cancel", e);
+        }
+    }
+
     private void notifyEmsOrderCancel(Order order) {
         try {
             EmsMessage emsMessage = new EmsMessage();
@@ -398,30 +1013,38 @@ public class OrderService {
         }
     }
 
+    /**
+     * 更新本地缓存，Redis由OrderPersister异步写入
+     */
     private void saveOrder(Order order) {
-        RMap<String, Order> orderMap = redissonClient.getMap(orderPrefix + "map");
-        orderMap.put(order.getOrderId(), order);
+        orderPersister.saveOrder(order);
+        orderCache.update(order);
+    }
 
-        RList<String> userOrders = redissonClient.getList(orderPrefix + "user:" + order.getUserId());
-        if (!userOrders.contains(order.getOrderId())) {
-            userOrders.add(order.getOrderId());
-        }
+    private void addToIndex(RBatch batch, Order order) {
+        orderPersister.addToIndex(batch, order);
+    }
+
+    private String userOrderKey(String userId, String state, String symbol) {
+        return orderPersister.userOrderKey(userId, state, symbol);
     }
 
+    /**
+     * 本地缓存 -> 尚未写入Redis的订单 -> Redis
+     */
     private Order getOrder(String orderId) {
-        RMap<String, Order> orderMap = redissonClient.getMap(orderPrefix + "map");
-        return orderMap.get(orderId);
+        Order order = orderCache.peek(orderId);
+        if (order == null) {
+            order = orderPersister.pending(orderId);
+        }
+        return order != null ? order : orderCache.get(orderId);
     }
 
     private void saveTrade(Trade trade) {
-        RList<Trade> tradeList = redissonClient.getList(tradePrefix + "order:" + trade.getOrderId());
-        tradeList.add(trade);
-
-        RList<Trade> userTrades = redissonClient.getList(tradePrefix + "user:" + trade.getUserId());
-        userTrades.add(trade);
+        orderPersister.saveTrade(trade);
     }
 
     private String generateOrderId() {
-        return "ORD" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8);
+        return idGenerator.nextIdString();
     }
 }
@@ -0,0 +1,186 @@
+package com.uex.trading.order;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 成交去重过滤器，拦截EMS重放或重复投递的成交
+ *
+ * 三层判断，绝大多数成交只走内存：
+ * 1. 最近windowSize条tradeId（环形数组 + HashSet），精确判断
+ * 2. 布隆过滤器，记录启动以来及启动时从Redis预热的全部tradeId；未命中即确定是新成交
+ * 3. 布隆命中时才查Redis确认：trading:trade:dedup:{bucket} 按小时分桶的Set，保留ttlHours小时
+ *
+ * 解码线程用 {@link #firstSeen} 判重，通过后tradeId只记为处理中（同时拦截结算完成前到达的重复投递）；
+ * 结算成功后才由结算线程调用 {@link #settled} 记入上面三层并异步写入Redis，结算失败调用 {@link #settleFailed} 撤销，
+ * EMS重放时该成交可以重新结算。重启后由预热的布隆过滤器和Redis继续拦截重放。
+ */
+@Slf4j
+@Component
+public class TradeDedupFilter {
+
+    private static final long BUCKET_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${redis.keys.trade-prefix}")
+    private String tradePrefix;
+
+    @Value("${zeromq.trade.dedup.window-size:100000}")
+    private int windowSize;
+
+    @Value("${zeromq.trade.dedup.expected-insertions:10000000}")
+    private long expectedInsertions;
+
+    @Value("${zeromq.trade.dedup.fpp:0.001}")
+    private double fpp;
+
+    @Value("${zeromq.trade.dedup.ttl-hours:24}")
+    private int ttlHours;
+
+    private String[] window;
+    private Set<String> windowSet;
+    private int windowPos;
+    private BloomFilter<CharSequence> bloomFilter;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private Counter duplicates;
+    private Counter redisChecks;
+
+    @PostConstruct
+    public void init() {
+        window = new String[windowSize];
+        windowSet = new HashSet<>(windowSize * 2);
+        bloomFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, fpp);
+        duplicates = meterRegistry.counter("trade.dedup.duplicates");
+        redisChecks = meterRegistry.counter("trade.dedup.redis.checks");
+        warmUp();
+    }
+
+    /**
+     * 解码线程调用，通过后tradeId记为处理中，结算完成后必须调用 {@link #settled} 或 {@link #settleFailed}
+     *
+     * @return true 第一次出现；false 重复成交（已结算或正在结算），应丢弃
+     */
+    public boolean firstSeen(String tradeId) {
+        if (inWindow(tradeId) || inFlight.contains(tradeId)) {
+            duplicates.increment();
+            return false;
+        }
+        if (bloomFilter.mightContain(tradeId) && existsInRedis(tradeId)) {
+            duplicates.increment();
+            return false;
+        }
+
+        inFlight.add(tradeId);
+        return true;
+    }
+
+    /**
+     * 结算成功后由结算线程调用，之后重复投递的该成交会被丢弃
+     */
+    public void settled(String tradeId) {
+        remember(tradeId);
+        inFlight.remove(tradeId);
+        persist(tradeId);
+    }
+
+    /**
+     * 结算失败时由结算线程调用，EMS重放的该成交会重新结算
+     */
+    public void settleFailed(String tradeId) {
+        inFlight.remove(tradeId);
+    }
+
+    private synchronized boolean inWindow(String tradeId) {
+        return windowSet.contains(tradeId);
+    }
+
+    private synchronized void remember(String tradeId) {
+        String evicted = window[windowPos];
+        if (evicted != null) {
+            windowSet.remove(evicted);
+        }
+        window[windowPos] = tradeId;
+        windowSet.add(tradeId);
+        windowPos = (windowPos + 1) % windowSize;
+        bloomFilter.put(tradeId);
+    }
+
+    private boolean existsInRedis(String tradeId) {
+        redisChecks.increment();
+        long current = currentBucket();
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        for (int i = 0; i <= ttlHours; i++) {
+            batch.getSet(bucketKey(current - i), StringCodec.INSTANCE).containsAsync(tradeId);
+        }
+        BatchResult<?> result = batch.execute();
+        for (Object exists : result.getResponses()) {
+            if (Boolean.TRUE.equals(exists)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void persist(String tradeId) {
+        String key = bucketKey(currentBucket());
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults());
+        batch.getSet(key, StringCodec.INSTANCE).addAsync(tradeId);
+        batch.getSet(key, StringCodec.INSTANCE).expireAsync(Duration.ofHours(ttlHours + 1));
+        batch.executeAsync().whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Failed to persist tradeId for dedup: tradeId={}", tradeId, error);
+            }
+        });
+    }
+
+    /**
+     * 启动时把Redis中仍在保留期内的tradeId装入布隆过滤器
+     */
+    private void warmUp() {
+        long current = currentBucket();
+        long count = 0;
+        for (int i = 0; i <= ttlHours; i++) {
+            RSet<String> bucket = redissonClient.getSet(bucketKey(current - i), StringCodec.INSTANCE);
+            for (String tradeId : bucket) {
+                bloomFilter.put(tradeId);
+                count++;
+            }
+        }
+        log.info("Trade dedup filter warmed up: tradeIds={}, windowSize={}, expectedInsertions={}, fpp={}",
+                count, windowSize, expectedInsertions, fpp);
+    }
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / BUCKET_MILLIS;
+    }
+
+    private String bucketKey(long bucket) {
+        return tradePrefix + "dedup:" + bucket;
+    }
+}
@@ -0,0 +1,325 @@
+package com.uex.trading.risk;
+
+import com.uex.trading.common.FixedPoint;
+import com.uex.trading.common.OrderType;
+import com.uex.trading.order.Order;
+import com.uex.trading.order.OrderJournal;
+import com.uex.trading.symbol.SymbolRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 下单前风控，在冻结资金之前执行
+ *
+ * 每个交易对的参数从 {@link SymbolRegistry} 编译成 {@link SymbolRule}，交易对信息更新后自动重新编译。
+ * 检查项：价格对齐tickSize、数量对齐stepSize、最小数量、最小下单金额、单笔最大金额、
+ * 用户未完结订单数、用户在单个交易对上的未成交挂单金额（敞口）。
+ *
+ * 价格和数量为交易对精度下的定点数，通过检查时不分配对象。用户敞口按订单增量维护：
+ * 下单时计入，成交时按成交数量扣减，订单完全成交或EMS确认撤单时扣除剩余部分。
+ * 用户第一次下单时从订单日志中该用户的未完结订单重建敞口（已请求撤单的订单不计入）。
+ * 市价单按该交易对最近成交价估算金额，尚无成交价时按单笔最大金额计入。金额上限的单位为交易对的计价货币。
+ */
+@Slf4j
+@Component
+public class RiskEngine {
+
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    @Autowired
+    private OrderJournal orderJournal;
+
+    @Value("${risk.max-open-orders:200}")
+    private int maxOpenOrders;
+
+    @Value("${risk.max-order-notional:1000000}")
+    private BigDecimal maxOrderNotionalConfig;
+
+    @Value("${risk.max-symbol-exposure:5000000}")
+    private BigDecimal maxSymbolExposureConfig;
+
+    private long maxOrderNotional;
+    private long maxSymbolExposure;
+    private volatile SymbolRule[] rules = new SymbolRule[0];
+    private final Map<String, UserRisk> users = new ConcurrentHashMap<>();
+    /** 各交易对最近成交价，FixedPoint.SCALE位小数，0表示尚无成交 */
+    private volatile AtomicLongArray lastPrices = new AtomicLongArray(0);
+
+    @PostConstruct
+    public void init() {
+        maxOrderNotional = FixedPoint.toLong(maxOrderNotionalConfig, FixedPoint.SCALE);
+        maxSymbolExposure = FixedPoint.toLong(maxSymbolExposureConfig, FixedPoint.SCALE);
+        log.info("Risk engine started: maxOpenOrders={}, maxOrderNotional={}, maxSymbolExposure={}",
+                maxOpenOrders, maxOrderNotionalConfig, maxSymbolExposureConfig);
+    }
+
+    /**
+     * 检查订单并计入用户敞口，不通过时抛出异常且不计入
+     *
+     * @param price    priceScale位小数，市价单为0
+     * @param quantity qtyScale位小数
+     */
+    public void reserve(String userId, String orderId, int symbolId, OrderType orderType, long price, long quantity) {
+        SymbolRule rule = rule(symbolId);
+        long notional = check(rule, symbolId, orderType, price, quantity);
+
+        UserRisk user = user(userId);
+        synchronized (user) {
+            if (user.openOrders.size() >= maxOpenOrders) {
+                throw new RuntimeException("Too many open orders: " + maxOpenOrders);
+            }
+            long exposure = user.exposure(symbolId);
+            if (exposure + notional > maxSymbolExposure) {
+                throw new RuntimeException("Open order exposure exceeds limit: " + maxSymbolExposureConfig);
+            }
+            user.add(orderId, symbolId, notional);
+        }
+    }
+
+    /**
+     * 改单：按新的价格和数量检查，用剩余部分的金额替换订单原有敞口，不通过时抛出异常且敞口不变
+     *
+     * @param quantity  改单后的订单总数量
+     * @param filledQty 已成交数量
+     */
+    public void amend(String userId, String orderId, int symbolId, OrderType orderType, long price, long quantity,
+                      long filledQty) {
+        SymbolRule rule = rule(symbolId);
+        check(rule, symbolId, orderType, price, quantity);
+        long notional = orderType != OrderType.MARKET
+                ? FixedPoint.multiply(price, rule.priceScale, quantity - filledQty, rule.qtyScale, FixedPoint.SCALE)
+                : marketNotional(rule, symbolId, quantity - filledQty);
+
+        UserRisk user = user(userId);
+        synchronized (user) {
+            OpenOrder open = user.openOrders.get(orderId);
+            long previous = open != null ? open.notional : 0L;
+            if (user.exposure(symbolId) - previous + notional > maxSymbolExposure) {
+                throw new RuntimeException("Open order exposure exceeds limit: " + maxSymbolExposureConfig);
+            }
+            user.remove(orderId);
+            user.add(orderId, symbolId, notional);
+        }
+    }
+
+    /**
+     * 价格/数量的步长、最小值和单笔金额检查
+     *
+     * @return 订单金额，市价单为按最近成交价估算的金额
+     */
+    private long check(SymbolRule rule, int symbolId, OrderType orderType, long price, long quantity) {
+        if (orderType != OrderType.MARKET && price <= 0) {
+            throw new RuntimeException("Price must be positive");
+        }
+        if (rule.tickSize > 0 && price % rule.tickSize != 0) {
+            throw new RuntimeException("Price not aligned to tick size: " + rule.source.getTickSize());
+        }
+        if (quantity <= 0) {
+            throw new RuntimeException("Quantity must be positive");
+        }
+        if (rule.stepSize > 0 && quantity % rule.stepSize != 0) {
+            throw new RuntimeException("Quantity not aligned to step size: " + rule.source.getStepSize());
+        }
+        if (quantity < rule.minQty) {
+            throw new RuntimeException("Quantity below minimum: " + rule.source.getMinOrderQty());
+        }
+
+        long notional;
+        if (orderType != OrderType.MARKET) {
+            notional = FixedPoint.multiply(price, rule.priceScale, quantity, rule.qtyScale, FixedPoint.SCALE);
+            if (notional < rule.minNotional) {
+                throw new RuntimeException("Order amount below minimum: " + rule.source.getMinOrderAmount());
+            }
+            if (notional > maxOrderNotional) {
+                throw new RuntimeException("Order amount exceeds maximum: " + maxOrderNotionalConfig);
+            }
+        } else {
+            notional = marketNotional(rule, symbolId, quantity);
+            if (notional > maxOrderNotional) {
+                throw new RuntimeException("Order amount exceeds maximum: " + maxOrderNotionalConfig);
+            }
+        }
+        return notional;
+    }
+
+    /**
+     * 市价单按最近成交价估算金额，尚无成交价时按单笔最大金额计
+     */
+    private long marketNotional(SymbolRule rule, int symbolId, long quantity) {
+        AtomicLongArray prices = lastPrices;
+        long lastPrice = symbolId < prices.length() ? prices.get(symbolId) : 0L;
+        if (lastPrice <= 0) {
+            return maxOrderNotional;
+        }
+        return FixedPoint.multiply(lastPrice, FixedPoint.SCALE, quantity, rule.qtyScale, FixedPoint.SCALE);
+    }
+
+    /**
+     * 成交后记录最近成交价并扣减敞口，订单完结时移除
+     *
+     * @param filledQty  本次成交数量，qtyScale位小数
+     * @param tradePrice 成交价，priceScale位小数
+     */
+    public void onFill(Order order, long filledQty, long tradePrice, boolean done) {
+        int symbolId = symbolRegistry.symbolId(order.getSymbol());
+        if (symbolId >= 0 && tradePrice > 0) {
+            updateLastPrice(symbolId, FixedPoint.rescale(tradePrice, rule(symbolId).priceScale, FixedPoint.SCALE));
+        }
+
+        UserRisk user = users.get(order.getUserId());
+        if (user == null) {
+            return;
+        }
+        synchronized (user) {
+            OpenOrder open = user.openOrders.get(order.getOrderId());
+            if (open == null) {
+                return;
+            }
+            if (done) {
+                user.remove(order.getOrderId());
+                return;
+            }
+            SymbolRule rule = rule(open.symbolId);
+            // 市价单按成交价扣减
+            long price = order.getPrice() != null ? FixedPoint.toLong(order.getPrice(), rule.priceScale) : tradePrice;
+            long filled = FixedPoint.multiply(price, rule.priceScale, filledQty, rule.qtyScale, FixedPoint.SCALE);
+            long released = Math.min(filled, open.notional);
+            open.notional -= released;
+            user.exposure[open.symbolId] -= released;
+        }
+    }
+
+    /**
+     * EMS确认撤单或下单失败时移除剩余敞口，重复调用无影响
+     */
+    public void release(String userId, String orderId) {
+        UserRisk user = users.get(userId);
+        if (user == null) {
+            return;
+        }
+        synchronized (user) {
+            user.remove(orderId);
+        }
+    }
+
+    private void updateLastPrice(int symbolId, long price) {
+        AtomicLongArray prices = lastPrices;
+        if (symbolId >= prices.length()) {
+            synchronized (this) {
+                prices = lastPrices;
+                if (symbolId >= prices.length()) {
+                    AtomicLongArray grown = new AtomicLongArray(Math.max(symbolId + 1, symbolRegistry.symbolCount()));
+                    for (int i = 0; i < prices.length(); i++) {
+                        grown.set(i, prices.get(i));
+                    }
+                    lastPrices = grown;
+                    prices = grown;
+                }
+            }
+        }
+        prices.set(symbolId, price);
+    }
+
+    private UserRisk user(String userId) {
+        UserRisk user = users.get(userId);
+        if (user != null) {
+            return user;
+        }
+
+        UserRisk loaded = new UserRisk();
+        for (Order order : orderJournal.openOrders(userId)) {
+            int symbolId = symbolRegistry.symbolId(order.getSymbol());
+            if (symbolId < 0) {
+                continue;
+            }
+            SymbolRule rule = rule(symbolId);
+            long remainQty = FixedPoint.toLong(order.getQuantity(), rule.qtyScale)
+                    - FixedPoint.toLong(order.getFilledQty(), rule.qtyScale);
+            long notional = order.getPrice() != null
+                    ? FixedPoint.multiply(FixedPoint.toLong(order.getPrice(), rule.priceScale), rule.priceScale,
+                            remainQty, rule.qtyScale, FixedPoint.SCALE)
+                    : marketNotional(rule, symbolId, remainQty);
+            loaded.add(order.getOrderId(), symbolId, notional);
+        }
+        user = users.putIfAbsent(userId, loaded);
+        return user != null ? user : loaded;
+    }
+
+    private SymbolRule rule(int symbolId) {
+        SymbolRule[] current = rules;
+        if (symbolId < current.length) {
+            SymbolRule rule = current[symbolId];
+            if (rule != null && rule.source == symbolRegistry.symbolInfo(symbolId)) {
+                return rule;
+            }
+        }
+        return compile(symbolId);
+    }
+
+    /**
+     * 交易对首次使用或SymbolInfo被替换时重新编译
+     */
+    private synchronized SymbolRule compile(int symbolId) {
+        SymbolRule rule = new SymbolRule(
+                symbolRegistry.symbolInfo(symbolId),
+                symbolRegistry.priceScale(symbolId),
+                symbolRegistry.qtyScale(symbolId),
+                symbolRegistry.tickSize(symbolId),
+                symbolRegistry.stepSize(symbolId),
+                symbolRegistry.minOrderQty(symbolId),
+                symbolRegistry.minOrderAmount(symbolId));
+
+        SymbolRule[] next = Arrays.copyOf(rules, Math.max(rules.length, symbolRegistry.symbolCount()));
+        next[symbolId] = rule;
+        rules = next;
+        return rule;
+    }
+
+    /**
+     * 用户的未完结订单和各交易对敞口，访问时以自身为锁
+     */
+    private static final class UserRisk {
+        final Map<String, OpenOrder> openOrders = new HashMap<>();
+        long[] exposure = new long[0];
+
+        long exposure(int symbolId) {
+            return symbolId < exposure.length ? exposure[symbolId] : 0L;
+        }
+
+        void add(String orderId, int symbolId, long notional) {
+            if (symbolId >= exposure.length) {
+                exposure = Arrays.copyOf(exposure, Math.max(symbolId + 1, exposure.length * 2));
+            }
+            exposure[symbolId] += notional;
+            openOrders.put(orderId, new OpenOrder(symbolId, notional));
+        }
+
+        void remove(String orderId) {
+            OpenOrder open = openOrders.remove(orderId);
+            if (open != null) {
+                exposure[open.symbolId] -= open.notional;
+            }
+        }
+    }
+
+    private static final class OpenOrder {
+        final int symbolId;
+        long notional;
+
+        OpenOrder(int symbolId, long notional) {
+            this.symbolId = symbolId;
+            this.notional = notional;
+        }
+    }
+}
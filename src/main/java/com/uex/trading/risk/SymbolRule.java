@@ -0,0 +1,30 @@
+package com.uex.trading.risk;
+
+import com.uex.trading.symbol.SymbolInfo;
+
+/**
+ * 单个交易对预编译的风控参数，全部为定点数
+ *
+ * tickSize为priceScale位小数，stepSize/minQty为qtyScale位小数，minNotional为 {@link com.uex.trading.common.FixedPoint#SCALE} 位小数。
+ * 步长为0表示不限制。
+ */
+final class SymbolRule {
+    final SymbolInfo source;
+    final int priceScale;
+    final int qtyScale;
+    final long tickSize;
+    final long stepSize;
+    final long minQty;
+    final long minNotional;
+
+    SymbolRule(SymbolInfo source, int priceScale, int qtyScale,
+               long tickSize, long stepSize, long minQty, long minNotional) {
+        this.source = source;
+        this.priceScale = priceScale;
+        this.qtyScale = qtyScale;
+        this.tickSize = tickSize;
+        this.stepSize = stepSize;
+        this.minQty = minQty;
+        this.minNotional = minNotional;
+    }
+}
@@ -0,0 +1,236 @@
+package com.uex.trading.symbol;
+
+import com.uex.trading.common.FixedPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 交易对/币种注册表
+ *
+ * 根据SymbolService同步的SymbolInfo为交易对和币种分配连续的int id，id在进程内只增不改。
+ * 交易对参数预先换算成定点数存放在按id索引的数组里，热路径按id直接取值，不做字符串解析。
+ * 数组写时复制，读取方拿到的是一致的快照，不需要加锁。
+ *
+ * 定点数约定：tickSize为priceScale位小数，stepSize/minOrderQty为qtyScale位小数，
+ * minOrderAmount和手续费率为 {@link FixedPoint#SCALE} 位小数。
+ */
+@Slf4j
+@Component
+public class SymbolRegistry {
+
+    private final Map<String, Integer> symbolIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> assetIds = new ConcurrentHashMap<>();
+    private volatile Tables tables = new Tables(0, 0);
+
+    /**
+     * 注册或更新交易对，已存在的交易对和币种保留原id
+     */
+    public synchronized void register(Collection<SymbolInfo> symbolInfos) {
+        Tables current = tables;
+        Map<String, Integer> newSymbols = new HashMap<>();
+        Map<String, Integer> newAssets = new HashMap<>();
+        for (SymbolInfo info : symbolInfos) {
+            if (!symbolIds.containsKey(info.getSymbol()) && !newSymbols.containsKey(info.getSymbol())) {
+                newSymbols.put(info.getSymbol(), current.symbolCount + newSymbols.size());
+            }
+            for (String asset : new String[]{info.getBaseAsset(), info.getQuoteAsset()}) {
+                if (!assetIds.containsKey(asset) && !newAssets.containsKey(asset)) {
+                    newAssets.put(asset, current.assetCount + newAssets.size());
+                }
+            }
+        }
+
+        Tables next = current.copy(current.symbolCount + newSymbols.size(), current.assetCount + newAssets.size());
+        newAssets.forEach((asset, id) -> next.assetNames[id] = asset);
+        for (SymbolInfo info : symbolInfos) {
+            Integer id = symbolIds.get(info.getSymbol());
+            fill(next, id != null ? id : newSymbols.get(info.getSymbol()), info, newAssets);
+        }
+
+        // 先发布表再发布id，保证拿到的id在表里一定存在
+        tables = next;
+        assetIds.putAll(newAssets);
+        symbolIds.putAll(newSymbols);
+        log.info("Symbol registry updated: symbols={}, assets={}", next.symbolCount, next.assetCount);
+    }
+
+    /**
+     * @return 交易对id，未注册返回-1
+     */
+    public int symbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        return id == null ? -1 : id;
+    }
+
+    public int requireSymbolId(String symbol) {
+        Integer id = symbolIds.get(symbol);
+        if (id == null) {
+            throw new RuntimeException("Symbol not found: " + symbol);
+        }
+        return id;
+    }
+
+    /**
+     * @return 币种id，未注册返回-1，不分配新id
+     */
+    public int assetId(String asset) {
+        Integer id = assetIds.get(asset);
+        return id == null ? -1 : id;
+    }
+
+    public String assetName(int assetId) {
+        return tables.assetNames[assetId];
+    }
+
+    public String symbolName(int symbolId) {
+        return tables.symbolInfos[symbolId].getSymbol();
+    }
+
+    public SymbolInfo symbolInfo(int symbolId) {
+        return tables.symbolInfos[symbolId];
+    }
+
+    public int baseAsset(int symbolId) {
+        return tables.baseAsset[symbolId];
+    }
+
+    public int quoteAsset(int symbolId) {
+        return tables.quoteAsset[symbolId];
+    }
+
+    public int priceScale(int symbolId) {
+        return tables.priceScale[symbolId];
+    }
+
+    public int qtyScale(int symbolId) {
+        return tables.qtyScale[symbolId];
+    }
+
+    public long tickSize(int symbolId) {
+        return tables.tickSize[symbolId];
+    }
+
+    public long stepSize(int symbolId) {
+        return tables.stepSize[symbolId];
+    }
+
+    public long minOrderQty(int symbolId) {
+        return tables.minOrderQty[symbolId];
+    }
+
+    public long minOrderAmount(int symbolId) {
+        return tables.minOrderAmount[symbolId];
+    }
+
+    public long makerFee(int symbolId) {
+        return tables.makerFee[symbolId];
+    }
+
+    public long takerFee(int symbolId) {
+        return tables.takerFee[symbolId];
+    }
+
+    public int symbolCount() {
+        return tables.symbolCount;
+    }
+
+    /**
+     * 币种id，未出现过的币种（如只充值未交易的币种）会新分配id
+     *
+     * 只用于已落库余额里的币种名，请求参数里的币种名用 {@link #assetId(String)}，否则任意字符串都会让注册表无限增长
+     */
+    public synchronized int internAsset(String asset) {
+        Integer id = assetIds.get(asset);
+        if (id != null) {
+            return id;
+        }
+        Tables current = tables;
+        Tables next = current.copy(current.symbolCount, current.assetCount + 1);
+        int newId = current.assetCount;
+        next.assetNames[newId] = asset;
+        tables = next;
+        assetIds.put(asset, newId);
+        return newId;
+    }
+
+    private void fill(Tables t, int id, SymbolInfo info, Map<String, Integer> newAssets) {
+        int priceScale = FixedPoint.scaleOf(info.getTickSize());
+        int qtyScale = FixedPoint.scaleOf(info.getStepSize());
+
+        t.symbolInfos[id] = info;
+        t.baseAsset[id] = assetIds.getOrDefault(info.getBaseAsset(), newAssets.get(info.getBaseAsset()));
+        t.quoteAsset[id] = assetIds.getOrDefault(info.getQuoteAsset(), newAssets.get(info.getQuoteAsset()));
+        t.priceScale[id] = priceScale;
+        t.qtyScale[id] = qtyScale;
+        t.tickSize[id] = FixedPoint.toLong(info.getTickSize(), priceScale);
+        t.stepSize[id] = FixedPoint.toLong(info.getStepSize(), qtyScale);
+        t.minOrderQty[id] = FixedPoint.toLong(info.getMinOrderQty(), qtyScale);
+        t.minOrderAmount[id] = FixedPoint.toLong(info.getMinOrderAmount(), FixedPoint.SCALE);
+        t.makerFee[id] = FixedPoint.toLong(info.getMakerFee(), FixedPoint.SCALE);
+        t.takerFee[id] = FixedPoint.toLong(info.getTakerFee(), FixedPoint.SCALE);
+    }
+
+    /**
+     * 按id索引的参数表，发布后不再修改
+     */
+    private static final class Tables {
+        final int symbolCount;
+        final int assetCount;
+        final SymbolInfo[] symbolInfos;
+        final int[] baseAsset;
+        final int[] quoteAsset;
+        final int[] priceScale;
+        final int[] qtyScale;
+        final long[] tickSize;
+        final long[] stepSize;
+        final long[] minOrderQty;
+        final long[] minOrderAmount;
+        final long[] makerFee;
+        final long[] takerFee;
+        final String[] assetNames;
+
+        Tables(int symbolCount, int assetCount) {
+            this.symbolCount = symbolCount;
+            this.assetCount = assetCount;
+            symbolInfos = new SymbolInfo[symbolCount];
+            baseAsset = new int[symbolCount];
+            quoteAsset = new int[symbolCount];
+            priceScale = new int[symbolCount];
+            qtyScale = new int[symbolCount];
+            tickSize = new long[symbolCount];
+            stepSize = new long[symbolCount];
+            minOrderQty = new long[symbolCount];
+            minOrderAmount = new long[symbolCount];
+            makerFee = new long[symbolCount];
+            takerFee = new long[symbolCount];
+            assetNames = new String[assetCount];
+        }
+
+        private Tables(Tables from, int symbolCount, int assetCount) {
+            this.symbolCount = symbolCount;
+            this.assetCount = assetCount;
+            symbolInfos = Arrays.copyOf(from.symbolInfos, symbolCount);
+            baseAsset = Arrays.copyOf(from.baseAsset, symbolCount);
+            quoteAsset = Arrays.copyOf(from.quoteAsset, symbolCount);
+            priceScale = Arrays.copyOf(from.priceScale, symbolCount);
+            qtyScale = Arrays.copyOf(from.qtyScale, symbolCount);
+            tickSize = Arrays.copyOf(from.tickSize, symbolCount);
+            stepSize = Arrays.copyOf(from.stepSize, symbolCount);
+            minOrderQty = Arrays.copyOf(from.minOrderQty, symbolCount);
+            minOrderAmount = Arrays.copyOf(from.minOrderAmount, symbolCount);
+            makerFee = Arrays.copyOf(from.makerFee, symbolCount);
+            takerFee = Arrays.copyOf(from.takerFee, symbolCount);
+            assetNames = Arrays.copyOf(from.assetNames, assetCount);
+        }
+
+        Tables copy(int symbolCount, int assetCount) {
+            return new Tables(this, symbolCount, assetCount);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.uex.trading.symbol;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RMap;
 import org.redisson.api.RedissonClient;
@@ -11,6 +12,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Slf4j
@@ -32,6 +34,17 @@ public class SymbolService {
     @Value("${redis.keys.symbol-prefix}")
     private String symbolPrefix;
 
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    @PostConstruct
+    public void init() {
+        // 启动时用Redis中已有的交易对构建注册表，不必等待首次同步
+        List<SymbolInfo> symbolInfos = getAllSymbols();
+        symbolRegistry.register(symbolInfos);
+        log.info("Loaded {} symbols from Redis into registry", symbolInfos.size());
+    }
+
     public void syncSymbolsFromBinance() {
         try {
             log.info("Starting to sync symbols from Binance");
@@ -154,11 +167,21 @@ public class SymbolService {
         for (SymbolInfo symbolInfo : symbolInfos) {
             symbolMap.put(symbolInfo.getSymbol(), symbolInfo);
         }
+        symbolRegistry.register(symbolInfos);
     }
 
     public SymbolInfo getSymbolInfo(String symbol) {
+        int symbolId = symbolRegistry.symbolId(symbol);
+        if (symbolId >= 0) {
+            return symbolRegistry.symbolInfo(symbolId);
+        }
+
         RMap<String, SymbolInfo> symbolMap = redissonClient.getMap(symbolPrefix + "map");
-        return symbolMap.get(symbol);
+        SymbolInfo symbolInfo = symbolMap.get(symbol);
+        if (symbolInfo != null) {
+            symbolRegistry.register(Collections.singletonList(symbolInfo));
+        }
+        return symbolInfo;
     }
 
     public List<SymbolInfo> getAllSymbols() {
@@ -0,0 +1,262 @@
+package com.uex.trading.zeromq;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.uex.trading.common.SpscRingBuffer;
+import com.uex.trading.order.OrderService;
+import com.uex.trading.order.Trade;
+import com.uex.trading.order.TradeDedupFilter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 成交结算流水线：接收 -> 解码 -> 结算
+ *
+ * ZeroMqTradeConsumer的接收线程只负责收帧并放入解码队列；解码线程解析JSON，经 {@link TradeDedupFilter} 丢弃重复成交后
+ * 按orderId哈希分发到N个结算分区；
+ * 每个分区一个线程调用 {@link OrderService#handleTradeFromEms}，同一订单的成交始终在同一分区按顺序结算。
+ * EMS的撤单确认（CANCELED.主题）同样按orderId分区，排在该订单之前的成交之后调用 {@link OrderService#handleCancelFromEms}。
+ * 阶段之间用有界的 {@link SpscRingBuffer} 连接，队列满时上游自旋等待。
+ *
+ * 指标：
+ * - trade.pipeline.queue.depth{stage}     各阶段队列长度
+ * - trade.pipeline.stage.latency{stage}   从进入该阶段队列到处理完成的耗时
+ * - trade.pipeline.latency                从收到消息到结算完成的耗时
+ */
+@Slf4j
+@Component
+public class TradePipeline {
+
+    private static final byte[] TOPIC = "TRADE.".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CANCELED_TOPIC = "CANCELED.".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TradeDedupFilter tradeDedupFilter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${zeromq.trade.pipeline.partitions:4}")
+    private int partitionCount;
+
+    @Value("${zeromq.trade.pipeline.ring-size:8192}")
+    private int ringSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectReader tradeReader = objectMapper.readerFor(Trade.class);
+
+    private SpscRingBuffer<Frame> decodeQueue;
+    private List<SpscRingBuffer<Frame>> settleQueues;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+    private volatile boolean decodeStopped;
+
+    private Timer decodeLatency;
+    private Timer settleLatency;
+    private Timer totalLatency;
+
+    @PostConstruct
+    public void start() {
+        decodeQueue = new SpscRingBuffer<>(ringSize);
+        settleQueues = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            settleQueues.add(new SpscRingBuffer<>(ringSize));
+        }
+
+        decodeLatency = stageTimer("decode");
+        settleLatency = stageTimer("settle");
+        totalLatency = Timer.builder("trade.pipeline.latency").register(meterRegistry);
+        Gauge.builder("trade.pipeline.queue.depth", decodeQueue, SpscRingBuffer::size)
+                .tag("stage", "decode").register(meterRegistry);
+        for (int i = 0; i < partitionCount; i++) {
+            Gauge.builder("trade.pipeline.queue.depth", settleQueues.get(i), SpscRingBuffer::size)
+                    .tag("stage", "settle-" + i).register(meterRegistry);
+        }
+
+        running = true;
+        threads.add(startThread("trade-decode", this::decodeLoop));
+        for (int i = 0; i < partitionCount; i++) {
+            SpscRingBuffer<Frame> queue = settleQueues.get(i);
+            threads.add(startThread("trade-settle-" + i, () -> settleLoop(queue)));
+        }
+        log.info("Trade pipeline started: partitions={}, ringSize={}", partitionCount, decodeQueue.capacity());
+    }
+
+    /**
+     * 接收阶段入口，只能由接收线程调用
+     */
+    public void publish(byte[] data) {
+        decodeQueue.put(new Frame(data, System.nanoTime()));
+    }
+
+    private void decodeLoop() {
+        int idle = 0;
+        while (running || !decodeQueue.isEmpty()) {
+            Frame frame = decodeQueue.poll();
+            if (frame == null) {
+                idle = SpscRingBuffer.idle(idle);
+                continue;
+            }
+            idle = 0;
+            try {
+                if (startsWith(frame.data, CANCELED_TOPIC)) {
+                    JsonNode orderId = objectMapper.readTree(frame.data, CANCELED_TOPIC.length,
+                            frame.data.length - CANCELED_TOPIC.length).get("orderId");
+                    if (orderId == null || orderId.isNull()) {
+                        log.warn("Received cancel confirmation without orderId");
+                        continue;
+                    }
+                    frame.canceledOrderId = orderId.asText();
+                    frame.data = null;
+                    long now = System.nanoTime();
+                    decodeLatency.record(now - frame.receivedAt, TimeUnit.NANOSECONDS);
+                    frame.enqueuedAt = now;
+                    settleQueues.get(partitionOf(frame.canceledOrderId)).put(frame);
+                    continue;
+                }
+                if (!startsWith(frame.data, TOPIC)) {
+                    log.warn("Received message without expected topic prefix: {}",
+                            new String(frame.data, StandardCharsets.UTF_8));
+                    continue;
+                }
+                frame.trade = tradeReader.readValue(frame.data, TOPIC.length, frame.data.length - TOPIC.length);
+                frame.data = null;
+
+                String tradeId = frame.trade.getTradeId();
+                if (tradeId == null) {
+                    log.warn("Received trade without tradeId, dedup skipped: orderId={}", frame.trade.getOrderId());
+                } else if (!tradeDedupFilter.firstSeen(tradeId)) {
+                    log.warn("Duplicate trade from EMS dropped: tradeId={}, orderId={}", tradeId, frame.trade.getOrderId());
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                decodeLatency.record(now - frame.receivedAt, TimeUnit.NANOSECONDS);
+                frame.enqueuedAt = now;
+                String key = frame.trade.getOrderId() != null ? frame.trade.getOrderId() : frame.trade.getUserId();
+                settleQueues.get(partitionOf(key)).put(frame);
+            } catch (Exception e) {
+                log.error("Error decoding trade notification from EMS", e);
+            }
+        }
+        decodeStopped = true;
+        log.info("Trade decode thread stopped");
+    }
+
+    private void settleLoop(SpscRingBuffer<Frame> queue) {
+        int idle = 0;
+        while (!decodeStopped || !queue.isEmpty()) {
+            Frame frame = queue.poll();
+            if (frame == null) {
+                idle = SpscRingBuffer.idle(idle);
+                continue;
+            }
+            idle = 0;
+            if (frame.canceledOrderId != null) {
+                try {
+                    orderService.handleCancelFromEms(frame.canceledOrderId);
+                    settleLatency.record(System.nanoTime() - frame.enqueuedAt, TimeUnit.NANOSECONDS);
+                } catch (Exception e) {
+                    log.error("Error applying cancel confirmation from EMS: orderId={}", frame.canceledOrderId, e);
+                }
+                continue;
+            }
+            Trade trade = frame.trade;
+            try {
+                orderService.handleTradeFromEms(trade);
+                if (trade.getTradeId() != null) {
+                    tradeDedupFilter.settled(trade.getTradeId());
+                }
+
+                long now = System.nanoTime();
+                settleLatency.record(now - frame.enqueuedAt, TimeUnit.NANOSECONDS);
+                totalLatency.record(now - frame.receivedAt, TimeUnit.NANOSECONDS);
+                log.info("Processed trade from EMS: tradeId={}, orderId={}, price={}, qty={}",
+                        trade.getTradeId(), trade.getOrderId(), trade.getPrice(), trade.getQuantity());
+            } catch (Exception e) {
+                // 不记为已结算，EMS重放时重新结算
+                if (trade.getTradeId() != null) {
+                    tradeDedupFilter.settleFailed(trade.getTradeId());
+                }
+                log.error("Error settling trade from EMS: tradeId={}", trade.getTradeId(), e);
+            }
+        }
+        log.info("Trade settle thread stopped: {}", Thread.currentThread().getName());
+    }
+
+    private int partitionOf(String key) {
+        return key == null ? 0 : (key.hashCode() & 0x7fffffff) % partitionCount;
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("trade.pipeline.stage.latency").tag("stage", stage).register(meterRegistry);
+    }
+
+    private Thread startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 停机时先停止接收（ZeroMqTradeConsumer先于本组件销毁），再等各阶段把队列处理完
+     */
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down trade pipeline, draining queues");
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 流水线中传递的一条成交消息或撤单确认
+     */
+    private static final class Frame {
+        byte[] data;
+        Trade trade;
+        String canceledOrderId;
+        final long receivedAt;
+        long enqueuedAt;
+
+        Frame(byte[] data, long receivedAt) {
+            this.data = data;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package com.uex.trading.zeromq;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.uex.trading.order.OrderService;
-import com.uex.trading.order.Trade;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
@@ -21,11 +18,10 @@ public class ZeroMqTradeConsumer {
     private int tradePort;
 
     @Autowired
-    private OrderService orderService;
+    private TradePipeline tradePipeline;
 
     private ZContext context;
     private ZMQ.Socket socket;
-    private final ObjectMapper objectMapper = new ObjectMapper();
     private volatile boolean running = false;
     private Thread consumerThread;
 
@@ -50,39 +46,22 @@ public class ZeroMqTradeConsumer {
         }
     }
 
+    /**
+     * 接收阶段：只收帧，解码和结算交给 {@link TradePipeline}
+     */
     private void consume() {
         log.info("Trade consumer thread started");
 
         while (running && !Thread.currentThread().isInterrupted()) {
             try {
-                // Receive message from EMS (format: "TRADE." + Trade JSON)
+                // Receive message from EMS (format: "TRADE." + Trade JSON, or "CANCELED." + {"orderId"})
                 byte[] data = socket.recv(0);
                 if (data == null) {
                     continue;
                 }
-
-                String messageWithTopic = new String(data, ZMQ.CHARSET);
-                log.debug("Received trade notification from EMS: {}", messageWithTopic);
-
-                // Remove "TRADE." topic prefix
-                String topic = "TRADE.";
-                if (!messageWithTopic.startsWith(topic)) {
-                    log.warn("Received message without expected topic prefix: {}", messageWithTopic);
-                    continue;
-                }
-                String json = messageWithTopic.substring(topic.length());
-
-                // Parse trade object
-                Trade trade = objectMapper.readValue(json, Trade.class);
-
-                // Process trade
-                orderService.handleTradeFromEms(trade);
-
-                log.info("Processed trade from EMS: tradeId={}, orderId={}, price={}, qty={}",
-                        trade.getTradeId(), trade.getOrderId(), trade.getPrice(), trade.getQuantity());
-
+                tradePipeline.publish(data);
             } catch (Exception e) {
-                log.error("Error processing trade notification from EMS", e);
+                log.error("Error receiving trade notification from EMS", e);
                 // Continue consuming even if one message fails
             }
         }
@@ -0,0 +1,25 @@
+-- 一次读取用户的全部余额
+--
+-- KEYS[1]   用户币种索引set trading:asset:{userId}，成员"*"表示该用户的旧余额已回填到索引
+-- ARGV[1]   余额key前缀 trading:balance:{userId}:
+--
+-- 返回：{indexed, asset, available, frozen, updateTime, version, ...}
+--   indexed 1 索引已回填；0 未回填，需要按旧方式扫描一次
+--   旧版本默认codec写入的余额hash读不到available字段，对应位置返回nil
+
+local assets = redis.call('SMEMBERS', KEYS[1])
+local result = {0}
+
+for _, asset in ipairs(assets) do
+    if asset == '*' then
+        result[1] = 1
+    else
+        local fields = redis.call('HMGET', ARGV[1] .. asset, 'available', 'frozen', 'updateTime', 'version')
+        result[#result + 1] = asset
+        for j = 1, 4 do
+            result[#result + 1] = fields[j]
+        end
+    end
+end
+
+return result
@@ -0,0 +1,83 @@
+-- 原子应用一次账本操作：校验余额 -> 写入新余额
+--
+-- KEYS[1..n]     余额hash trading:balance:{userId}:{asset}
+-- KEYS[n+1]      用户币种索引set trading:asset:{userId}
+-- ARGV[1]        n
+-- 每个余额7个参数：version, availableOut, frozenOut, available, frozen, updateTime, asset
+--   version       操作后的余额版本号，Redis中必须正好是version-1
+--   availableOut  本次从可用中转出的金额，Redis中可用必须不少于该值
+--   frozenOut     本次从冻结中转出的金额，Redis中冻结必须不少于该值
+--   asset         币种，写入后加入用户币种索引
+--
+-- 返回：1 已应用；0 该操作之前已应用过（批次重试）；-i 第i个余额校验失败，未做任何修改
+--
+-- 金额是8位小数的字符串，Lua的数字是double，直接tonumber比较会丢精度；
+-- 拆成整数部分和8位小数部分分别比较，两部分都在double能精确表示的范围内。
+
+local function parse(amount)
+    amount = amount or '0'
+    local sign = 1
+    if string.sub(amount, 1, 1) == '-' then
+        sign = -1
+        amount = string.sub(amount, 2)
+    end
+    local int, frac = string.match(amount, '^(%d*)%.?(%d*)$')
+    if int == nil then
+        error('Invalid amount: ' .. amount)
+    end
+    frac = string.sub(frac .. '00000000', 1, 8)
+    int = tonumber(int ~= '' and int or '0')
+    frac = tonumber(frac)
+    if int == 0 and frac == 0 then
+        sign = 1
+    end
+    return sign, int, frac
+end
+
+-- a < b
+local function less(a, b)
+    local sa, ia, fa = parse(a)
+    local sb, ib, fb = parse(b)
+    if sa ~= sb then
+        return sa < sb
+    end
+    if ia ~= ib then
+        return (ia < ib) == (sa > 0)
+    end
+    if fa ~= fb then
+        return (fa < fb) == (sa > 0)
+    end
+    return false
+end
+
+local n = tonumber(ARGV[1])
+
+for i = 1, n do
+    local a = 2 + (i - 1) * 7
+    local target = tonumber(ARGV[a])
+    local version = tonumber(redis.call('HGET', KEYS[i], 'version') or '0')
+    if version >= target then
+        return 0
+    end
+    if version ~= target - 1 then
+        return -i
+    end
+    if less(redis.call('HGET', KEYS[i], 'available'), ARGV[a + 1]) then
+        return -i
+    end
+    if less(redis.call('HGET', KEYS[i], 'frozen'), ARGV[a + 2]) then
+        return -i
+    end
+end
+
+for i = 1, n do
+    local a = 2 + (i - 1) * 7
+    redis.call('HSET', KEYS[i],
+            'available', ARGV[a + 3],
+            'frozen', ARGV[a + 4],
+            'updateTime', ARGV[a + 5],
+            'version', ARGV[a])
+    redis.call('SADD', KEYS[n + 1], ARGV[a + 6])
+end
+
+return 1
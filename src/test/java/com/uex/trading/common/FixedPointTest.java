@@ -0,0 +1,101 @@
+package com.uex.trading.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FixedPointTest {
+
+    @Test
+    void toLongRoundsHalfUp() {
+        assertThat(FixedPoint.toLong(new BigDecimal("1.005"), 2)).isEqualTo(101L);
+        assertThat(FixedPoint.toLong(new BigDecimal("1.004"), 2)).isEqualTo(100L);
+        assertThat(FixedPoint.toLong(new BigDecimal("-1.005"), 2)).isEqualTo(-101L);
+        assertThat(FixedPoint.toLong(new BigDecimal("12.3"), 4)).isEqualTo(123000L);
+        assertThat(FixedPoint.toLong(null, 8)).isZero();
+    }
+
+    @Test
+    void toLongRejectsOverflow() {
+        assertThatThrownBy(() -> FixedPoint.toLong(new BigDecimal("1e20"), 0))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> FixedPoint.toLong(new BigDecimal("100000000000"), FixedPoint.SCALE))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void toLongExactRejectsExtraDigits() {
+        assertThat(FixedPoint.toLongExact(new BigDecimal("1.10"), 2)).isEqualTo(110L);
+        assertThat(FixedPoint.toLongExact(new BigDecimal("1.1000"), 2)).isEqualTo(110L);
+        assertThatThrownBy(() -> FixedPoint.toLongExact(new BigDecimal("1.001"), 2))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void scaleOfStep() {
+        assertThat(FixedPoint.scaleOf(new BigDecimal("0.01"))).isEqualTo(2);
+        assertThat(FixedPoint.scaleOf(new BigDecimal("0.0100"))).isEqualTo(2);
+        assertThat(FixedPoint.scaleOf(BigDecimal.ONE)).isZero();
+        assertThat(FixedPoint.scaleOf(BigDecimal.TEN)).isZero();
+        assertThat(FixedPoint.scaleOf(null)).isEqualTo(FixedPoint.SCALE);
+        assertThat(FixedPoint.scaleOf(BigDecimal.ZERO)).isEqualTo(FixedPoint.SCALE);
+    }
+
+    @Test
+    void divideRoundsHalfUpAwayFromZero() {
+        assertThat(FixedPoint.divide(5, 2)).isEqualTo(3L);
+        assertThat(FixedPoint.divide(-5, 2)).isEqualTo(-3L);
+        assertThat(FixedPoint.divide(5, -2)).isEqualTo(-3L);
+        assertThat(FixedPoint.divide(-5, -2)).isEqualTo(3L);
+        assertThat(FixedPoint.divide(4, 3)).isEqualTo(1L);
+        assertThat(FixedPoint.divide(-4, 3)).isEqualTo(-1L);
+        assertThat(FixedPoint.divide(6, 3)).isEqualTo(2L);
+    }
+
+    @Test
+    void rescale() {
+        assertThat(FixedPoint.rescale(12345, 4, 4)).isEqualTo(12345L);
+        assertThat(FixedPoint.rescale(123, 2, 8)).isEqualTo(123000000L);
+        assertThat(FixedPoint.rescale(12345, 4, 2)).isEqualTo(123L);
+        assertThat(FixedPoint.rescale(12350, 4, 2)).isEqualTo(124L);
+        assertThat(FixedPoint.rescale(-12350, 4, 2)).isEqualTo(-124L);
+        assertThatThrownBy(() -> FixedPoint.rescale(Long.MAX_VALUE / 10 + 1, 0, 1))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void multiply() {
+        // 1.5 * 2.25 = 3.375
+        assertThat(FixedPoint.multiply(15, 1, 225, 2, FixedPoint.SCALE)).isEqualTo(337500000L);
+        // 0.125 * 0.5 = 0.0625 -> 0.063
+        assertThat(FixedPoint.multiply(125, 3, 5, 1, 3)).isEqualTo(63L);
+        assertThat(FixedPoint.multiply(-125, 3, 5, 1, 3)).isEqualTo(-63L);
+    }
+
+    @Test
+    void multiplyFallsBackWhenIntermediateOverflows() {
+        long million = 1_000_000L * FixedPoint.pow10(FixedPoint.SCALE);
+        long three = 3 * FixedPoint.pow10(FixedPoint.SCALE);
+        assertThat(FixedPoint.multiply(million, FixedPoint.SCALE, three, FixedPoint.SCALE, FixedPoint.SCALE))
+                .isEqualTo(3_000_000L * FixedPoint.pow10(FixedPoint.SCALE));
+        assertThat(FixedPoint.mulDiv(Long.MAX_VALUE, 3, 6)).isEqualTo(Long.MAX_VALUE / 2 + 1);
+    }
+
+    @Test
+    void multiplyRejectsOverflowingResult() {
+        assertThatThrownBy(() -> FixedPoint.multiply(Long.MAX_VALUE, 0, 2, 0, 0))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> FixedPoint.multiply(Long.MAX_VALUE / 2, 0, 3, 0, 1))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void toDecimalAndPlainString() {
+        assertThat(FixedPoint.toDecimal(123456789L, FixedPoint.SCALE)).isEqualByComparingTo("1.23456789");
+        assertThat(FixedPoint.toPlainString(100000000L, FixedPoint.SCALE)).isEqualTo("1.00000000");
+        assertThat(FixedPoint.toPlainString(-5L, 2)).isEqualTo("-0.05");
+    }
+}
@@ -0,0 +1,75 @@
+package com.uex.trading.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdGeneratorTest {
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThatThrownBy(() -> new IdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new IdGenerator(1024)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void idsAreStrictlyIncreasing() {
+        IdGenerator generator = new IdGenerator(7);
+        long previous = generator.nextId();
+        String previousString = IdGenerator.toString(previous);
+        // 超过单毫秒4096个序列号，覆盖序列号用完后沿用上一个时间戳的路径
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            String idString = IdGenerator.toString(id);
+            assertThat(id).isGreaterThan(previous);
+            assertThat(idString).isGreaterThan(previousString);
+            previous = id;
+            previousString = idString;
+        }
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws InterruptedException {
+        IdGenerator generator = new IdGenerator(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    ids.add(generator.nextId());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(ids).hasSize(200_000);
+    }
+
+    @Test
+    void encodesNodeIdAndTimestamp() {
+        IdGenerator generator = new IdGenerator(513);
+        long before = System.currentTimeMillis();
+        long id = generator.nextId();
+
+        assertThat((id >>> 12) & 1023).isEqualTo(513L);
+        assertThat(IdGenerator.timestampOf(id)).isBetween(before, System.currentTimeMillis());
+    }
+
+    @Test
+    void stringFormIsFixedLengthAndParsesBack() {
+        IdGenerator generator = new IdGenerator(0);
+        long id = generator.nextId();
+        String value = generator.nextIdString();
+
+        assertThat(value).hasSize(13);
+        assertThat(IdGenerator.toString(1L)).isEqualTo("0000000000001");
+        assertThat(IdGenerator.parse(IdGenerator.toString(id))).isEqualTo(id);
+        assertThat(IdGenerator.parse(value)).isGreaterThan(id);
+    }
+}
@@ -0,0 +1,83 @@
+package com.uex.trading.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpscRingBufferTest {
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertThat(new SpscRingBuffer<Integer>(5).capacity()).isEqualTo(8);
+        assertThat(new SpscRingBuffer<Integer>(8).capacity()).isEqualTo(8);
+        assertThat(new SpscRingBuffer<Integer>(1000).capacity()).isEqualTo(1024);
+    }
+
+    @Test
+    void rejectsOfferWhenFull() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+        assertThat(buffer.offer(4)).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+
+        assertThat(buffer.poll()).isEqualTo(0);
+        assertThat(buffer.offer(4)).isTrue();
+        assertThat(buffer.offer(5)).isFalse();
+    }
+
+    @Test
+    void keepsFifoOrderAcrossWraparound() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 50; round++) {
+            // 每轮写入3个取出3个，下标不断越过数组末尾
+            for (int i = 0; i < 3; i++) {
+                assertThat(buffer.offer(next++)).isTrue();
+            }
+            for (int i = 0; i < 3; i++) {
+                assertThat(buffer.poll()).isEqualTo(expected++);
+            }
+            assertThat(buffer.isEmpty()).isTrue();
+        }
+        assertThat(buffer.poll()).isNull();
+    }
+
+    @Test
+    void deliversAllElementsInOrderBetweenTwoThreads() throws InterruptedException {
+        int count = 1_000_000;
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(64);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread consumer = new Thread(() -> {
+            int expected = 0;
+            int idle = 0;
+            while (expected < count) {
+                Integer value = buffer.poll();
+                if (value == null) {
+                    idle = SpscRingBuffer.idle(idle);
+                    continue;
+                }
+                idle = 0;
+                if (value != expected) {
+                    failure.set("expected " + expected + " but got " + value);
+                    return;
+                }
+                expected++;
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < count; i++) {
+            buffer.put(i);
+        }
+        consumer.join(10_000);
+
+        assertThat(consumer.isAlive()).isFalse();
+        assertThat(failure.get()).isNull();
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,117 @@
+package com.uex.trading.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    private final List<String> fired = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> firedAt = new ConcurrentHashMap<>();
+    private CountDownLatch latch;
+    private TimingWheel<String> wheel;
+
+    /**
+     * 3层、每层4个槽：第0层覆盖4个tick，第1层16个，第2层64个（640ms）
+     */
+    private void startWheel(int expected) {
+        latch = new CountDownLatch(expected);
+        wheel = new TimingWheel<>("timing-wheel-test", TICK_MS, 2, 3, tasks -> {
+            long now = System.currentTimeMillis();
+            for (String task : tasks) {
+                fired.add(task);
+                firedAt.put(task, now);
+                latch.countDown();
+            }
+        });
+        wheel.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void firesTasksCascadedFromHigherLevelsInDeadlineOrder() throws InterruptedException {
+        startWheel(3);
+        long now = System.currentTimeMillis();
+        long level2 = now + 400;
+        long level1 = now + 120;
+        long level0 = now + 20;
+        wheel.schedule("level2", level2);
+        wheel.schedule("level1", level1);
+        wheel.schedule("level0", level0);
+        assertThat(wheel.size()).isEqualTo(3);
+
+        assertThat(latch.await(3, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("level0", "level1", "level2");
+        assertThat(firedAt.get("level0")).isGreaterThanOrEqualTo(level0);
+        assertThat(firedAt.get("level1")).isGreaterThanOrEqualTo(level1);
+        assertThat(firedAt.get("level2")).isGreaterThanOrEqualTo(level2);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void canceledTaskDoesNotFire() throws InterruptedException {
+        startWheel(1);
+        long now = System.currentTimeMillis();
+        TimingWheel.Timeout<String> canceled = wheel.schedule("canceled", now + 100);
+        TimingWheel.Timeout<String> kept = wheel.schedule("kept", now + 200);
+
+        assertThat(canceled.cancel()).isTrue();
+        assertThat(canceled.cancel()).isFalse();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        assertThat(latch.await(3, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("kept");
+        assertThat(kept.cancel()).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cancelAfterCascadeRemovesTask() throws InterruptedException {
+        startWheel(1);
+        long now = System.currentTimeMillis();
+        TimingWheel.Timeout<String> canceled = wheel.schedule("canceled", now + 450);
+        wheel.schedule("kept", now + 500);
+
+        // 等到任务已从第2层下沉到低层后再取消
+        TimeUnit.MILLISECONDS.sleep(350);
+        assertThat(canceled.cancel()).isTrue();
+
+        assertThat(latch.await(3, TimeUnit.SECONDS)).isTrue();
+        TimeUnit.MILLISECONDS.sleep(3 * TICK_MS);
+        assertThat(fired).containsExactly("kept");
+    }
+
+    @Test
+    void expiredDeadlineFiresOnNextTick() throws InterruptedException {
+        startWheel(1);
+        wheel.schedule("expired", System.currentTimeMillis() - 1000);
+
+        assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("expired");
+    }
+
+    @Test
+    void rejectsDeadlineBeyondRange() {
+        startWheel(0);
+        assertThatThrownBy(() -> wheel.schedule("far", System.currentTimeMillis() + 10_000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(wheel.size()).isZero();
+    }
+}
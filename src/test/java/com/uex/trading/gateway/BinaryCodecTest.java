@@ -0,0 +1,193 @@
+package com.uex.trading.gateway;
+
+import com.uex.trading.common.OrderSide;
+import com.uex.trading.common.OrderStatus;
+import com.uex.trading.common.OrderType;
+import com.uex.trading.common.TimeInForce;
+import com.uex.trading.order.OrderRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryCodecTest {
+
+    private static final int BLOCK_LENGTH_OFFSET = 4;
+    private static final int HEADER_LENGTH = 16;
+
+    @Test
+    void orderRequestRoundTrip() {
+        OrderRequest order = new OrderRequest();
+        order.setSymbol("BTCUSDT");
+        order.setOrderType(OrderType.LIMIT);
+        order.setSide(OrderSide.SELL);
+        order.setPrice(new BigDecimal("65000.25"));
+        order.setQuantity(new BigDecimal("0.00100"));
+        order.setClientOrderId("客户端-1");
+        order.setTimeInForce(TimeInForce.GTT);
+        order.setExpireTime(1735689600000L);
+
+        BinaryMessage msg = message(BinaryCodec.ORDER_REQUEST);
+        msg.setUserId("user123");
+        msg.setOrder(order);
+
+        assertThat(roundTrip(msg)).isEqualTo(msg);
+    }
+
+    @Test
+    void orderRequestRoundTripWithNullFields() {
+        OrderRequest order = new OrderRequest();
+        order.setSymbol("ETHUSDT");
+        order.setOrderType(OrderType.MARKET);
+        order.setSide(OrderSide.BUY);
+        order.setQuantity(new BigDecimal("12"));
+
+        BinaryMessage msg = message(BinaryCodec.ORDER_REQUEST);
+        msg.setUserId("user123");
+        msg.setOrder(order);
+
+        BinaryMessage decoded = roundTrip(msg);
+        assertThat(decoded).isEqualTo(msg);
+        assertThat(decoded.getOrder().getPrice()).isNull();
+        assertThat(decoded.getOrder().getTimeInForce()).isNull();
+        assertThat(decoded.getOrder().getExpireTime()).isNull();
+        assertThat(decoded.getOrder().getClientOrderId()).isNull();
+    }
+
+    @Test
+    void responseAndCancelRoundTrip() {
+        BinaryMessage orderResponse = message(BinaryCodec.ORDER_RESPONSE);
+        orderResponse.setCode(0);
+        orderResponse.setStatus(OrderStatus.SUBMITTED);
+        orderResponse.setOrderId("0abc123def456");
+        orderResponse.setClientOrderId("c-1");
+        orderResponse.setMessage("Order submitted");
+        assertThat(roundTrip(orderResponse)).isEqualTo(orderResponse);
+
+        BinaryMessage cancelRequest = message(BinaryCodec.CANCEL_REQUEST);
+        cancelRequest.setUserId("user123");
+        cancelRequest.setOrderId("0abc123def456");
+        assertThat(roundTrip(cancelRequest)).isEqualTo(cancelRequest);
+
+        BinaryMessage cancelResponse = message(BinaryCodec.CANCEL_RESPONSE);
+        cancelResponse.setCode(9999);
+        cancelResponse.setOrderId("0abc123def456");
+        cancelResponse.setMessage("Order not found");
+        assertThat(roundTrip(cancelResponse)).isEqualTo(cancelResponse);
+    }
+
+    @Test
+    void skipsUnknownTrailingBlockFields() {
+        BinaryMessage msg = message(BinaryCodec.CANCEL_RESPONSE);
+        msg.setCode(0);
+        msg.setOrderId("0abc123def456");
+        ByteBuf original = encode(msg);
+
+        // 新版本在块尾追加4字节字段，旧读取方按blockLength跳过
+        ByteBuf extended = Unpooled.buffer();
+        extended.writeBytes(original, 0, HEADER_LENGTH + 8);
+        extended.setShortLE(BLOCK_LENGTH_OFFSET, 12);
+        extended.writeIntLE(0x7F7F7F7F);
+        extended.writeBytes(original, HEADER_LENGTH + 8, original.readableBytes() - HEADER_LENGTH - 8);
+
+        assertThat(BinaryCodec.decode(extended, extended.readableBytes())).isEqualTo(msg);
+    }
+
+    @Test
+    void rejectsTruncatedFrame() {
+        BinaryMessage msg = message(BinaryCodec.CANCEL_REQUEST);
+        msg.setUserId("user123");
+        msg.setOrderId("0abc123def456");
+        ByteBuf encoded = encode(msg);
+        int length = encoded.readableBytes();
+
+        for (int truncated : new int[]{length - 1, length - 5, HEADER_LENGTH + 1, HEADER_LENGTH - 1, 1}) {
+            ByteBuf copy = encoded.copy();
+            assertThatThrownBy(() -> BinaryCodec.decode(copy, truncated))
+                    .as("length %d", truncated)
+                    .isInstanceOf(CorruptedFrameException.class);
+        }
+    }
+
+    @Test
+    void decodeDoesNotReadPastFrame() {
+        BinaryMessage msg = message(BinaryCodec.CANCEL_REQUEST);
+        msg.setUserId("user123");
+        ByteBuf encoded = encode(msg);
+        int length = encoded.readableBytes();
+        encoded.writeBytes(new byte[]{1, 2, 3});
+
+        assertThat(BinaryCodec.decode(encoded, length)).isEqualTo(msg);
+        assertThat(encoded.readableBytes()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsInvalidHeaderAndBlock() {
+        BinaryMessage msg = message(BinaryCodec.ORDER_RESPONSE);
+        msg.setStatus(OrderStatus.FILLED);
+        ByteBuf encoded = encode(msg);
+
+        ByteBuf badVersion = encoded.copy();
+        badVersion.setByte(1, 99);
+        assertThatThrownBy(() -> BinaryCodec.decode(badVersion, badVersion.readableBytes()))
+                .isInstanceOf(CorruptedFrameException.class);
+
+        ByteBuf unknownTemplate = encoded.copy();
+        unknownTemplate.setShortLE(2, 42);
+        assertThatThrownBy(() -> BinaryCodec.decode(unknownTemplate, unknownTemplate.readableBytes()))
+                .isInstanceOf(CorruptedFrameException.class);
+
+        ByteBuf shortBlock = encoded.copy();
+        shortBlock.setShortLE(BLOCK_LENGTH_OFFSET, 4);
+        assertThatThrownBy(() -> BinaryCodec.decode(shortBlock, shortBlock.readableBytes()))
+                .isInstanceOf(CorruptedFrameException.class);
+
+        ByteBuf oversizedBlock = encoded.copy();
+        oversizedBlock.setShortLE(BLOCK_LENGTH_OFFSET, 0xFFFF);
+        assertThatThrownBy(() -> BinaryCodec.decode(oversizedBlock, oversizedBlock.readableBytes()))
+                .isInstanceOf(CorruptedFrameException.class);
+
+        ByteBuf badEnum = encoded.copy();
+        badEnum.setByte(HEADER_LENGTH + 4, 42);
+        assertThatThrownBy(() -> BinaryCodec.decode(badEnum, badEnum.readableBytes()))
+                .isInstanceOf(CorruptedFrameException.class);
+    }
+
+    @Test
+    void rejectsStringFieldOverLimit() {
+        BinaryMessage msg = message(BinaryCodec.CANCEL_RESPONSE);
+        // 3字节UTF-8字符，21845个正好65535字节
+        msg.setMessage("中".repeat(21845));
+        assertThat(roundTrip(msg)).isEqualTo(msg);
+
+        msg.setMessage("中".repeat(21846));
+        assertThatThrownBy(() -> encode(msg)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static BinaryMessage message(int templateId) {
+        BinaryMessage msg = new BinaryMessage();
+        msg.setTemplateId(templateId);
+        msg.setMsgId("msg-1");
+        msg.setTimestamp(1700000000000L);
+        return msg;
+    }
+
+    private static ByteBuf encode(BinaryMessage msg) {
+        ByteBuf out = Unpooled.buffer();
+        BinaryCodec.encode(msg, out);
+        return out;
+    }
+
+    private static BinaryMessage roundTrip(BinaryMessage msg) {
+        ByteBuf encoded = encode(msg);
+        assertThat(BinaryCodec.isBinary(encoded, 0)).isTrue();
+        BinaryMessage decoded = BinaryCodec.decode(encoded, encoded.readableBytes());
+        assertThat(encoded.readableBytes()).isZero();
+        return decoded;
+    }
+}
@@ -0,0 +1,77 @@
+package com.uex.trading.gateway;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GatewayMessageDecoderTest {
+
+    @Test
+    void decodesJsonAndBinaryFramesOnSameConnection() {
+        EmbeddedChannel channel = new EmbeddedChannel(new GatewayMessageDecoder());
+        BinaryMessage cancel = new BinaryMessage();
+        cancel.setTemplateId(BinaryCodec.CANCEL_REQUEST);
+        cancel.setMsgId("2");
+        cancel.setUserId("user123");
+        cancel.setOrderId("0abc123def456");
+
+        ByteBuf in = Unpooled.buffer();
+        writeJson(in, "{\"msgType\":\"ORDER_REQUEST\",\"msgId\":\"1\"}");
+        writeBinary(in, cancel);
+        channel.writeInbound(in);
+
+        GatewayMessage json = channel.readInbound();
+        assertThat(json.getMsgType()).isEqualTo("ORDER_REQUEST");
+        assertThat((BinaryMessage) channel.readInbound()).isEqualTo(cancel);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void dropsMalformedFramesAndKeepsDecoding() {
+        EmbeddedChannel channel = new EmbeddedChannel(new GatewayMessageDecoder());
+
+        ByteBuf in = Unpooled.buffer();
+        // 二进制头部不完整
+        in.writeInt(3);
+        in.writeBytes(new byte[]{BinaryCodec.MAGIC, 1, 1});
+        writeJson(in, "{not json");
+        writeJson(in, "{\"msgType\":\"CANCEL_REQUEST\",\"msgId\":\"3\"}");
+        channel.writeInbound(in);
+
+        GatewayMessage message = channel.readInbound();
+        assertThat(message.getMsgId()).isEqualTo("3");
+        assertThat((Object) channel.readInbound()).isNull();
+        assertThat(channel.isOpen()).isTrue();
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void rejectsOversizedFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel(new GatewayMessageDecoder(16));
+        ByteBuf in = Unpooled.buffer();
+        writeJson(in, "{\"msgType\":\"ORDER_REQUEST\",\"msgId\":\"1\"}");
+
+        assertThatThrownBy(() -> channel.writeInbound(in)).isInstanceOf(TooLongFrameException.class);
+        channel.finishAndReleaseAll();
+    }
+
+    private static void writeJson(ByteBuf out, String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void writeBinary(ByteBuf out, BinaryMessage message) {
+        int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        BinaryCodec.encode(message, out);
+        out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+    }
+}
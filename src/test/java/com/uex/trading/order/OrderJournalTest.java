@@ -0,0 +1,183 @@
+package com.uex.trading.order;
+
+import com.uex.trading.common.OrderSide;
+import com.uex.trading.common.OrderStatus;
+import com.uex.trading.common.OrderType;
+import com.uex.trading.common.TimeInForce;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderJournalTest {
+
+    /** 每条SUBMITTED约100字节，足够写满1MB的分段 */
+    private static final int ROLL_COUNT = 25_000;
+
+    @TempDir
+    Path dir;
+
+    private OrderJournal journal;
+
+    @AfterEach
+    void shutdown() {
+        if (journal != null) {
+            journal.shutdown();
+        }
+    }
+
+    @Test
+    void replaysEventsAfterRestart() throws IOException {
+        journal = open();
+        Order filled = order("A", "u1", "100.5", "2");
+        Order partial = order("B", "u1", "101", "3");
+        Order canceled = order("C", "u2", "99", "1");
+        journal.submitted(filled);
+        journal.submitted(List.of(partial, canceled));
+
+        fill(filled, "2", "100.5", OrderStatus.FILLED);
+        journal.filled(filled, new BigDecimal("2"), new BigDecimal("100.5"));
+        fill(partial, "1", "101", OrderStatus.PARTIAL_FILLED);
+        journal.filled(partial, new BigDecimal("1"), new BigDecimal("101"));
+        journal.cancelRequested(partial.getOrderId());
+
+        canceled.setPrice(new BigDecimal("98.5"));
+        canceled.setUpdateTime(canceled.getUpdateTime() + 1);
+        journal.amended(canceled);
+        journal.cancelRequested(List.of(canceled.getOrderId()));
+        journal.canceled(canceled.getOrderId());
+
+        reopen();
+
+        // CANCEL_REQUESTED之后仍未完结
+        List<Order> open = journal.openOrders();
+        assertThat(open).extracting(Order::getOrderId).containsExactly("B");
+        Order replayed = open.get(0);
+        assertThat(replayed.getStatus()).isEqualTo(OrderStatus.PARTIAL_FILLED);
+        assertThat(replayed.getFilledQty()).isEqualByComparingTo("1");
+        assertThat(replayed.getAvgPrice()).isEqualByComparingTo("101");
+        assertThat(replayed.getTimeInForce()).isEqualTo(TimeInForce.GTT);
+        assertThat(replayed.getExpireTime()).isEqualTo(partial.getExpireTime());
+        assertThat(journal.openOrders("u1")).extracting(Order::getOrderId).containsExactly("B");
+        assertThat(journal.openOrders("u2")).isEmpty();
+
+        Map<String, Order> closed = byId(journal.closedOrders());
+        assertThat(closed).containsOnlyKeys("A", "C");
+        assertThat(closed.get("A").getStatus()).isEqualTo(OrderStatus.FILLED);
+        assertThat(closed.get("C").getStatus()).isEqualTo(OrderStatus.CANCELED);
+        assertThat(closed.get("C").getPrice()).isEqualByComparingTo("98.5");
+
+        journal.projected(journal.closedOrders());
+        assertThat(journal.closedOrders()).isEmpty();
+    }
+
+    @Test
+    void rollsSegmentsAndReplaysAcrossThem() throws IOException {
+        journal = open();
+        for (int i = 0; i < ROLL_COUNT; i++) {
+            journal.submitted(order("order-" + i, "user-" + (i % 10), "100", "1"));
+        }
+        assertThat(segments()).hasSizeGreaterThan(1);
+
+        reopen();
+        assertThat(journal.openOrders()).hasSize(ROLL_COUNT);
+        assertThat(journal.openOrders("user-3")).hasSize(ROLL_COUNT / 10);
+    }
+
+    @Test
+    void snapshotDropsCoveredSegmentsAndKeepsState() throws IOException {
+        journal = open();
+        for (int i = 0; i < ROLL_COUNT; i++) {
+            journal.submitted(order("order-" + i, "user-" + (i % 10), "100", "1"));
+        }
+        Order first = journal.openOrders("user-0").get(0);
+        fill(first, "1", "100", OrderStatus.FILLED);
+        journal.filled(first, BigDecimal.ONE, new BigDecimal("100"));
+        int segmentsBefore = segments().size();
+
+        journal.snapshot();
+        assertThat(segments()).hasSizeLessThan(segmentsBefore);
+
+        // 快照之后的事件从分段重放
+        journal.canceled("order-1");
+        reopen();
+
+        assertThat(journal.openOrders()).hasSize(ROLL_COUNT - 2);
+        assertThat(byId(journal.closedOrders())).containsOnlyKeys(first.getOrderId(), "order-1");
+    }
+
+    @Test
+    void restartWithoutEventsReusesTailSegment() throws IOException {
+        journal = open();
+        journal.submitted(order("A", "u1", "100", "1"));
+        reopen();
+        reopen();
+
+        assertThat(journal.openOrders()).extracting(Order::getOrderId).containsExactly("A");
+        assertThat(segments()).hasSize(2);
+    }
+
+    private OrderJournal open() throws IOException {
+        OrderJournal opened = new OrderJournal();
+        ReflectionTestUtils.setField(opened, "journalDir", dir.toString());
+        ReflectionTestUtils.setField(opened, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(opened, "snapshotIntervalSeconds", 3600L);
+        opened.start();
+        return opened;
+    }
+
+    private void reopen() throws IOException {
+        journal.shutdown();
+        journal = open();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".log")).collect(Collectors.toList());
+        }
+    }
+
+    private static Map<String, Order> byId(List<Order> orders) {
+        return orders.stream().collect(Collectors.toMap(Order::getOrderId, Function.identity()));
+    }
+
+    private static Order order(String orderId, String userId, String price, String quantity) {
+        long now = System.currentTimeMillis();
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setUserId(userId);
+        order.setSymbol("BTCUSDT");
+        order.setOrderType(OrderType.LIMIT);
+        order.setSide(OrderSide.BUY);
+        order.setPrice(new BigDecimal(price));
+        order.setQuantity(new BigDecimal(quantity));
+        order.setFilledQty(BigDecimal.ZERO);
+        order.setAvgPrice(BigDecimal.ZERO);
+        order.setStatus(OrderStatus.PENDING);
+        order.setCreateTime(now);
+        order.setUpdateTime(now);
+        order.setClientOrderId("c-" + orderId);
+        order.setTimeInForce(TimeInForce.GTT);
+        order.setExpireTime(now + 60_000);
+        return order;
+    }
+
+    private static void fill(Order order, String filledQty, String avgPrice, OrderStatus status) {
+        order.setFilledQty(new BigDecimal(filledQty));
+        order.setAvgPrice(new BigDecimal(avgPrice));
+        order.setStatus(status);
+        order.setUpdateTime(order.getUpdateTime() + 1);
+    }
+}